@@ -127,6 +127,34 @@ case "$1" in
         fi
         ;;
     
+    plan-check|query-plan-check)
+        print_header "🔍 QueryPlanCheck - Plans des filtres /api/products"
+        echo ""
+        echo "Méthode : Pod temporaire (run --rm)"
+        echo ""
+        kubectl run plan-check-$(date +%s) --rm -it \
+            --image=$IMAGE \
+            --restart=Never \
+            --namespace=$NAMESPACE \
+            --env="DB_HOST=postgres-service" \
+            --env="DB_PORT=5432" \
+            -- java -cp app.jar com.reingenierie.admin.QueryPlanCheck
+        ;;
+    
+    invalidation-check|bus-check)
+        print_header "📡 InvalidationBusCheck - Bus d'invalidation LISTEN/NOTIFY"
+        echo ""
+        echo "Méthode : Pod temporaire (run --rm)"
+        echo ""
+        kubectl run invalidation-check-$(date +%s) --rm -it \
+            --image=$IMAGE \
+            --restart=Never \
+            --namespace=$NAMESPACE \
+            --env="DB_HOST=postgres-service" \
+            --env="DB_PORT=5432" \
+            -- java -cp app.jar com.reingenierie.admin.InvalidationBusCheck
+        ;;
+    
     console)
         print_header "🖥️  Console Interactive"
         echo ""
@@ -163,6 +191,12 @@ case "$1" in
         echo "                           $0 migrate --status     # Afficher le statut"
         echo "                           $0 migrate --job        # Via Job K8s"
         echo ""
+        echo "  plan-check             Vérifier (EXPLAIN) que les filtres de /api/products utilisent les index"
+        echo "                         Code de sortie 1 si un filtre provoque un parcours séquentiel"
+        echo ""
+        echo "  invalidation-check     Vérifier le bus d'invalidation entre pods (LISTEN/NOTIFY, reconnexion)"
+        echo "                         Code de sortie 1 si une notification n'est pas reçue"
+        echo ""
         echo "  console                Console interactive (à venir)"
         echo ""
         echo "  list                   Afficher cette aide"
@@ -97,7 +97,7 @@ run_experiment() {
     read -r total success failed max_downtime recovery_time < <(collect_metrics "${traffic_log}" "${TEST_DURATION}")
     
     # 7. Results
-    print_metrics_summary "${total}" "${success}" "${failed}" "${max_downtime}" "${recovery_time}"
+    print_metrics_summary "${total}" "${success}" "${failed}" "${max_downtime}" "${recovery_time}" "${traffic_log}"
     
     return $?
 }
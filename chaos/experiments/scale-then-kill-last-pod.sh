@@ -166,7 +166,7 @@ run_experiment() {
     echo "Downtime maximum observé  : ${max_downtime}s"
     echo ""
     
-    print_metrics_summary "${total}" "${success}" "${failed}" "${max_downtime}" "${recovery_time}"
+    print_metrics_summary "${total}" "${success}" "${failed}" "${max_downtime}" "${recovery_time}" "${traffic_log}"
     
     local result=$?
     
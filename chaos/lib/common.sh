@@ -255,6 +255,11 @@ stop_traffic() {
                 kill "${pid}" 2>/dev/null || true
                 # Kill child processes too
                 pkill -P "${pid}" 2>/dev/null || true
+                # Laisser le générateur Java écrire son rapport de latence (shutdown hook)
+                for _ in {1..10}; do
+                    ps -p "${pid}" > /dev/null 2>&1 || break
+                    sleep 1
+                done
                 log_debug "Générateur de trafic arrêté (PID: ${pid})"
             fi
         fi
@@ -383,12 +388,38 @@ collect_metrics() {
     echo "${total_checks} ${success_checks} ${failed_checks} ${max_downtime} ${recovery_time}"
 }
 
+# Rapport de latence du générateur de charge Java (lignes LATENCY, absentes en mode curl)
+print_latency_report() {
+    local log_file=$1
+    
+    if [[ -z "${log_file}" ]] || [[ ! -f "${log_file}" ]] || ! grep -q "^LATENCY" "${log_file}"; then
+        return 0
+    fi
+    
+    echo "Latence (temps de réponse corrigé de l'omission coordonnée) :"
+    grep "^LATENCY" "${log_file}" | awk '{
+        route = ""; rate = ""; p50 = ""; p99 = ""; p999 = ""; max = ""
+        for (i = 2; i <= NF; i++) {
+            split($i, kv, "=")
+            if (kv[1] == "route") route = kv[2]
+            else if (kv[1] == "error_rate") rate = kv[2]
+            else if (kv[1] == "p50_ms") p50 = kv[2]
+            else if (kv[1] == "p99_ms") p99 = kv[2]
+            else if (kv[1] == "p99.9_ms") p999 = kv[2]
+            else if (kv[1] == "max_ms") max = kv[2]
+        }
+        printf "  %-8s p50=%sms  p99=%sms  p99.9=%sms  max=%sms  erreurs=%s\n", route, p50, p99, p999, max, rate
+    }'
+    echo ""
+}
+
 print_metrics_summary() {
     local total=$1
     local success=$2
     local failed=$3
     local max_downtime=$4
     local recovery_time=$5
+    local log_file=${6:-}
     
     print_summary "RÉSUMÉ DE L'EXPÉRIENCE"
     
@@ -409,6 +440,7 @@ print_metrics_summary() {
     echo "Plus longue panne     : ${max_downtime}s"
     echo "Temps de recovery     : ${recovery_time}s"
     echo ""
+    print_latency_report "${log_file}"
     echo "Seuils:"
     
     local availability_pass=false
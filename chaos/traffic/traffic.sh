@@ -2,6 +2,12 @@
 
 ###############################################################################
 # Traffic Generator - Continuous HTTP requests to health endpoint
+#
+# Deux modes (TRAFFIC_MODE) :
+#   java : LoadGenerator (com.reingenierie.loadtest) - mix des routes /api/products
+#          à débit cible, histogrammes de latence (p50/p99/p99.9) en fin de test
+#   curl : une requête /api/health par seconde (disponibilité uniquement)
+# Par défaut : java si le générateur est compilé (mvn -Pjmh test-compile), curl sinon.
 ###############################################################################
 
 set -euo pipefail
@@ -18,6 +24,23 @@ source "${SCRIPT_DIR}/../lib/common.sh"
 : "${CHECK_INTERVAL:=1}"
 : "${REQUEST_TIMEOUT:=5}"
 
+# Load generator configuration (mode java)
+# LoadGenerator et HdrHistogram ne sont pas dans le JAR de l'application : classes du profil jmh
+: "${TRAFFIC_TARGET_DIR:=${SCRIPT_DIR}/../../target}"
+if [[ -z "${TRAFFIC_CLASSPATH:-}" && -f "${TRAFFIC_TARGET_DIR}/jmh.classpath" ]]; then
+    TRAFFIC_CLASSPATH="${TRAFFIC_TARGET_DIR}/test-classes:${TRAFFIC_TARGET_DIR}/classes:$(cat "${TRAFFIC_TARGET_DIR}/jmh.classpath")"
+fi
+: "${TRAFFIC_RATE:=50}"
+: "${TRAFFIC_MIX:=list=30,get=40,search=15,create=5,stock=10}"
+: "${TRAFFIC_WARMUP:=0}"
+if [[ -z "${TRAFFIC_MODE:-}" ]]; then
+    if [[ -n "${TRAFFIC_CLASSPATH:-}" ]] && command -v java > /dev/null 2>&1; then
+        TRAFFIC_MODE=java
+    else
+        TRAFFIC_MODE=curl
+    fi
+fi
+
 # Build full health check URL
 HEALTH_URL="${BASE_URL}${HEALTH_ENDPOINT}"
 
@@ -53,11 +76,32 @@ traffic_loop() {
     done
 }
 
+###############################################################################
+# Load generator - Java (open model)
+###############################################################################
+
+load_generator() {
+    log_info "Démarrage du générateur de charge Java (${TRAFFIC_RATE} req/s, mix: ${TRAFFIC_MIX})..."
+
+    # exec : stop_traffic envoie SIGTERM directement à la JVM, qui imprime son rapport de latence
+    exec java -cp "${TRAFFIC_CLASSPATH:?générateur non compilé : mvn -Pjmh test-compile}" com.reingenierie.loadtest.LoadGenerator \
+        --url "${BASE_URL}" \
+        --rate "${TRAFFIC_RATE}" \
+        --mix "${TRAFFIC_MIX}" \
+        --warmup "${TRAFFIC_WARMUP}" \
+        --duration 0 \
+        --timeout "$((REQUEST_TIMEOUT * 1000))"
+}
+
 ###############################################################################
 # Main
 ###############################################################################
 
 main() {
+    if [[ "${TRAFFIC_MODE}" == "java" ]]; then
+        load_generator
+    fi
+
     log_info "Démarrage du générateur de trafic..."
     log_info "URL cible: ${HEALTH_URL}"
     log_info "Intervalle: ${CHECK_INTERVAL}s"
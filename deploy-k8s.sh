@@ -150,9 +150,19 @@ deploy_to_k8s() {
     log_info "Attente du démarrage de PostgreSQL..."
     kubectl wait --for=condition=ready pod -l app=postgres -n ${NAMESPACE} --timeout=120s
     
+    # Migrations AVANT l'application : le nouveau code suppose le schéma à jour
+    # (ex. migration 011 : updated_at renseigné, sinon ?changedSince= ignore les produits concernés)
+    log_info "Migrations de base de données..."
+    kubectl apply -f ${K8S_DIR}/configmap.yaml
+    kubectl delete job productapp-db-migrate -n ${NAMESPACE} --ignore-not-found
+    kubectl apply -f ${K8S_DIR}/job-db-migrate.yaml
+    if ! kubectl wait --for=condition=complete job/productapp-db-migrate -n ${NAMESPACE} --timeout=300s; then
+        log_error "Migrations en échec : kubectl logs job/productapp-db-migrate -n ${NAMESPACE}"
+        exit 1
+    fi
+    
     # Déployer l'application
     log_info "Déploiement de l'application..."
-    kubectl apply -f ${K8S_DIR}/configmap.yaml
     kubectl apply -f ${K8S_DIR}/deployment.yaml
     kubectl apply -f ${K8S_DIR}/service.yaml
     kubectl apply -f ${K8S_DIR}/hpa.yaml
@@ -0,0 +1,81 @@
+package com.reingenierie.benchmark;
+
+import com.reingenierie.model.Product;
+import com.reingenierie.util.HibernateUtil;
+import com.reingenierie.util.ProductDataGenerator;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Base H2 en mémoire pour les benchmarks : configuration de HibernateUtil (propriétés système)
+ * et chargement d'un jeu de données reproductible (ProductDataGenerator)
+ */
+final class BenchmarkDatabase {
+
+    static final long SEED = 42L;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * À appeler avant le premier accès à HibernateUtil (une base par fork JMH)
+     */
+    static void configure() {
+        System.setProperty("DB_URL", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+        System.setProperty("DB_USER", "sa");
+        System.setProperty("DB_PASSWORD", "");
+        System.setProperty("DB_MAX_RETRIES", "1");
+        System.setProperty("DB_SHOW_SQL", "false");
+        System.setProperty("DB_STATISTICS_ENABLED", "false");
+        // Mesurer le chemin DAO/JDBC, pas les caches
+        System.setProperty("DB_CACHE_ENABLED", "false");
+        System.setProperty("PRODUCT_CACHE_ENABLED", "false");
+        HibernateUtil.getEntityManager().close();
+    }
+
+    /**
+     * Insère {@code size} produits (IDs 1..size) en batch JDBC
+     */
+    static void seed(int size) {
+        ProductDataGenerator generator = new ProductDataGenerator(SEED);
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("DELETE FROM products");
+                }
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO products (id, name, description, price, quantity, created_at, updated_at, version) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, 0)")) {
+                    for (int i = 0; i < size; i++) {
+                        Product product = generator.generate(i);
+                        insert.setLong(1, i + 1L);
+                        insert.setString(2, product.getName());
+                        insert.setString(3, product.getDescription());
+                        insert.setBigDecimal(4, product.getPrice());
+                        insert.setInt(5, product.getQuantity());
+                        insert.setTimestamp(6, Timestamp.valueOf(product.getCreatedAt()));
+                        insert.setTimestamp(7, Timestamp.valueOf(product.getUpdatedAt()));
+                        insert.addBatch();
+                        if ((i + 1) % 1000 == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                // Les créations pendant le benchmark ne doivent pas réutiliser les IDs chargés
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("ALTER SEQUENCE products_id_seq RESTART WITH " + (size + 51));
+                }
+            });
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
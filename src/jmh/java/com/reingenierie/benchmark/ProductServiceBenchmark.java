@@ -0,0 +1,90 @@
+package com.reingenierie.benchmark;
+
+import com.reingenierie.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opérations de ProductService (service + DAO + Hibernate + JDBC) sur H2 en mémoire,
+ * pour des tailles de catalogue de 1k à 1M produits.
+ *
+ * Un fork JMH par taille : chaque JVM initialise sa propre base et son propre HibernateUtil.
+ * Les résultats JSON (target/jmh-result.json) sont comparables d'un commit à l'autre.
+ *
+ * Usage : mvn -Pjmh test-compile exec:exec -Djmh.args="ProductServiceBenchmark -rf json -rff target/jmh-service.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private ProductService productService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.configure();
+        BenchmarkDatabase.seed(size);
+        productService = new ProductService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        productService.shutdown();
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public Object findById() {
+        return productService.getProductById(randomId());
+    }
+
+    @Benchmark
+    public Object findAll() {
+        return productService.getAllProducts();
+    }
+
+    @Benchmark
+    public Object findPage() {
+        return productService.getProductsPage(randomId() - 1, 50);
+    }
+
+    @Benchmark
+    public List<?> findByName() {
+        return productService.searchProductsByName("tablette pro");
+    }
+
+    @Benchmark
+    public long count() {
+        return productService.getProductCount();
+    }
+
+    @Benchmark
+    public boolean updateStock() {
+        // +1 puis -1 en moyenne : le stock reste stable au fil des itérations
+        return productService.updateStock(randomId(), ThreadLocalRandom.current().nextBoolean() ? 1 : -1);
+    }
+}
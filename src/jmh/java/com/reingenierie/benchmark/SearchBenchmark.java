@@ -0,0 +1,121 @@
+package com.reingenierie.benchmark;
+
+import com.reingenierie.model.Product;
+import com.reingenierie.service.ProductSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche par sous-chaîne : index trigramme en mémoire vs requête SQL LIKE '%x%'
+ *
+ * Le chemin SQL tourne sur H2 en mémoire (pas de pg_trgm) : il mesure le parcours
+ * séquentiel que l'index en mémoire remplace, sans latence réseau.
+ *
+ * Usage : mvn -Pjmh test-compile exec:exec -Djmh.args="SearchBenchmark -rf json -rff target/jmh-search.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String[] BRANDS = {"Dell", "Apple", "Sony", "Samsung", "Logitech", "Canon", "Bose", "Dyson"};
+    private static final String[] TYPES = {"Laptop", "Phone", "Casque", "Tablette", "Souris", "Camera", "Enceinte", "Aspirateur"};
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"sams", "pro 4"})
+    public String query;
+
+    private ProductSearchIndex index;
+    private Connection connection;
+    private PreparedStatement sqlSearch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        index = new ProductSearchIndex(false);
+        connection = DriverManager.getConnection("jdbc:h2:mem:search" + size + ";DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS products");
+            stmt.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, name VARCHAR(100) NOT NULL, "
+                + "description VARCHAR(500), price DECIMAL(10,2) NOT NULL, quantity INT NOT NULL)");
+        }
+
+        Random random = new Random(42);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO products (id, name, description, price, quantity) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= size; i++) {
+                String name = BRANDS[random.nextInt(BRANDS.length)] + " " + TYPES[random.nextInt(TYPES.length)]
+                    + " Pro " + random.nextInt(1000);
+                BigDecimal price = BigDecimal.valueOf(random.nextInt(200000), 2);
+                int quantity = random.nextInt(100);
+
+                Product product = new Product(name, null, price, quantity);
+                product.setId((long) i);
+                index.put(product);
+
+                insert.setLong(1, i);
+                insert.setString(2, name);
+                insert.setString(3, null);
+                insert.setBigDecimal(4, price);
+                insert.setInt(5, quantity);
+                insert.addBatch();
+                if (i % 1000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        sqlSearch = connection.prepareStatement(
+            "SELECT id, name, description, price, quantity FROM products "
+            + "WHERE LOWER(name) LIKE ? ORDER BY id LIMIT 50");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        sqlSearch.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public void inMemoryIndex(Blackhole bh) {
+        bh.consume(index.search(query, 50));
+    }
+
+    @Benchmark
+    public void sqlLike(Blackhole bh) throws SQLException {
+        sqlSearch.setString(1, "%" + query.toLowerCase() + "%");
+        try (ResultSet rs = sqlSearch.executeQuery()) {
+            while (rs.next()) {
+                Product product = new Product(rs.getString(2), rs.getString(3), rs.getBigDecimal(4), rs.getInt(5));
+                product.setId(rs.getLong(1));
+                bh.consume(product);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.reingenierie.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reingenierie.controller.ResponseFormat;
+import com.reingenierie.model.Product;
+import com.reingenierie.util.ProductDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sérialisation / désérialisation Jackson de Product avec la configuration de l'API, par format de réponse
+ * (JSON par défaut, CBOR, Smile : voir ResponseFormat)
+ *
+ * La taille des charges utiles (brute et gzip) de chaque combinaison est affichée au démarrage de l'essai.
+ *
+ * Usage : mvn -Pjmh test-compile exec:exec -Djmh.args="SerializationBenchmark -rf json -rff target/jmh-json.json"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int products;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public ResponseFormat format;
+
+    private ObjectMapper objectMapper;
+    private List<Product> list;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = format.mapper();
+        ProductDataGenerator generator = new ProductDataGenerator(BenchmarkDatabase.SEED);
+        list = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            Product product = generator.generate(i);
+            product.setId(i + 1L);
+            product.setVersion(0L);
+            list.add(product);
+        }
+        encoded = objectMapper.writeValueAsBytes(list);
+        System.out.printf("%n%s, %d produit(s) : %d octets, %d octets en gzip%n",
+            format, products, encoded.length, gzippedSize(encoded));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return objectMapper.readValue(encoded, Product[].class);
+    }
+
+    private static int gzippedSize(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,714 @@
+package com.reingenierie.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reingenierie.util.JsonUtil;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de charge HTTP pour l'API produits (modèle ouvert)
+ *
+ * - les requêtes partent à un débit cible fixe (--rate), quel que soit le temps de réponse :
+ *   un serveur lent ne ralentit pas l'injecteur (pas de boucle fermée "requête puis attente")
+ * - une requête = un thread virtuel, avec le client java.net.http en mode bloquant
+ * - la latence est mesurée depuis l'instant de départ PRÉVU de la requête (et non l'instant réel) :
+ *   correction de l'omission coordonnée, une pause du serveur est comptée pour toutes les requêtes qui l'ont subie
+ * - histogrammes HdrHistogram par route : p50/p90/p99/p99.9/max, taux d'erreur, débit obtenu
+ *
+ * Chaque seconde, une ligne au format de chaos/traffic/traffic.sh (HTTP_STATUS=... OK/FAILED) résume l'intervalle :
+ * les expériences de chaos comptent les secondes d'indisponibilité comme avant, et le rapport final
+ * (lignes LATENCY, imprimé à la fin ou à l'arrêt du processus) donne l'impact sur la latence.
+ *
+ * Outil de test, hors du JAR de l'application (profil Maven jmh, HdrHistogram en scope test) :
+ *   mvn -Pjmh test-compile    → classes dans target/test-classes, classpath dans target/jmh.classpath
+ *
+ * Usage:
+ *   java -cp "target/test-classes:target/classes:$(cat target/jmh.classpath)" com.reingenierie.loadtest.LoadGenerator [--url U] [--rate R] [--duration S] [--warmup S]
+ *        [--mix list=30,get=40,search=15,create=5,stock=10] [--timeout MS] [--max-in-flight N] [--json FICHIER]
+ *
+ * Options:
+ *   --url U            URL de base de l'API (défaut : http://localhost:8080)
+ *   --rate R           Débit cible en requêtes/s (défaut : 200)
+ *   --duration S       Durée de la mesure en secondes, 0 = jusqu'à l'arrêt du processus (défaut : 60)
+ *   --warmup S         Échauffement exclu des histogrammes (défaut : 5)
+ *   --mix ...          Poids relatifs des routes (défaut : list=30,get=40,search=15,create=5,stock=10)
+ *   --timeout MS       Timeout de connexion et de requête (défaut : 5000)
+ *   --max-in-flight N  Requêtes simultanées maximum ; au-delà la requête est abandonnée et comptée en erreur (défaut : 10000)
+ *   --json FICHIER     Écrit aussi le rapport final en JSON
+ *
+ * Exemple:
+ *   java -cp "target/test-classes:target/classes:$(cat target/jmh.classpath)" com.reingenierie.loadtest.LoadGenerator --rate 500 --duration 120
+ */
+public class LoadGenerator {
+
+    // Routes de l'API exercées par le générateur
+    enum Route {
+        LIST("list"), GET("get"), SEARCH("search"), CREATE("create"), STOCK("stock");
+
+        final String label;
+
+        Route(String label) {
+            this.label = label;
+        }
+
+        static Route fromLabel(String label) {
+            for (Route route : values()) {
+                if (route.label.equals(label)) {
+                    return route;
+                }
+            }
+            throw new IllegalArgumentException("Route inconnue dans --mix : " + label);
+        }
+    }
+
+    // Taille du réservoir d'IDs utilisés par get/stock (IDs découverts au démarrage puis IDs créés)
+    private static final int ID_POOL_SIZE = 4096;
+    private static final String[] DEFAULT_SEARCH_TERMS = {"pro", "sams", "laptop", "casque", "max"};
+
+    private final Options options;
+    private final ObjectMapper objectMapper = JsonUtil.createObjectMapper();
+    private final HttpClient client;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Route, RouteStats> routeStats = new EnumMap<>(Route.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicBoolean reported = new AtomicBoolean(false);
+
+    private final AtomicLongArray idPool = new AtomicLongArray(ID_POOL_SIZE);
+    private final AtomicLong idPoolWrites = new AtomicLong();
+    private volatile String[] searchTerms = DEFAULT_SEARCH_TERMS;
+
+    private long startNanos;
+    private volatile long measureFromNanos = Long.MAX_VALUE;
+    private volatile long measureEndNanos = 0;
+    // Intervalles de rapport (thread de rapport) : début de l'intervalle courant et du premier intervalle mesuré
+    private long intervalStartNanos;
+    private long measuredSinceNanos = 0;
+
+    public LoadGenerator(Options options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(options.timeoutMs))
+            .executor(executor)
+            .build();
+        for (Route route : Route.values()) {
+            routeStats.put(route, new RouteStats(route));
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        LoadGenerator generator = new LoadGenerator(options);
+        // Arrêt par SIGTERM (stop_traffic des scripts de chaos) : rapport final malgré tout
+        Runtime.getRuntime().addShutdownHook(new Thread(generator::stop, "load-generator-shutdown"));
+        generator.run();
+        System.exit(0);
+    }
+
+    /**
+     * Découverte des données, injection au débit cible puis rapport final
+     */
+    public void run() {
+        System.out.println("========================================");
+        System.out.println("🚀 LoadGenerator - " + options.baseUrl);
+        System.out.println("========================================");
+        System.out.println("   → Débit cible : " + options.rate + " req/s");
+        System.out.println("   → Durée : " + (options.durationSeconds > 0 ? options.durationSeconds + "s" : "illimitée")
+            + " (échauffement : " + options.warmupSeconds + "s)");
+        System.out.println("   → Mix : " + options.mixDescription());
+        discoverData();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "load-generator-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        intervalStartNanos = startNanos;
+        reporter.scheduleAtFixedRate(this::reportIntervalSafely, 1, 1, TimeUnit.SECONDS);
+
+        try {
+            inject();
+        } finally {
+            reporter.shutdownNow();
+        }
+        stop();
+    }
+
+    /**
+     * Arrêt : plus de nouvelles requêtes, attente des requêtes en vol (borné par le timeout), rapport final
+     */
+    public void stop() {
+        running.set(false);
+        if (!reported.compareAndSet(false, true)) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.timeoutMs);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        measureEndNanos = System.nanoTime();
+        reportInterval();
+        printFinalReport();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Boucle d'injection (modèle ouvert) : la requête n°i part à startNanos + i / rate, sans attendre les précédentes
+     */
+    private void inject() {
+        double intervalNanos = 1_000_000_000.0 / options.rate;
+        long endNanos = options.durationSeconds > 0
+            ? measureFromNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds)
+            : Long.MAX_VALUE;
+        SplittableRandom random = new SplittableRandom(options.seed);
+
+        for (long i = 0; running.get(); i++) {
+            long intendedNanos = startNanos + (long) (i * intervalNanos);
+            if (intendedNanos >= endNanos) {
+                break;
+            }
+            long wait;
+            while ((wait = intendedNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Route route = options.pickRoute(random);
+            RouteStats stats = routeStats.get(route);
+            if (inFlight.get() >= options.maxInFlight) {
+                // Injecteur saturé : la requête n'est pas envoyée mais reste comptée comme un échec
+                stats.recordDropped();
+                continue;
+            }
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    execute(route, stats, intendedNanos);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void execute(Route route, RouteStats stats, long intendedNanos) {
+        long sentNanos = System.nanoTime();
+        int status;
+        try {
+            if (route == Route.CREATE) {
+                HttpResponse<byte[]> response = client.send(buildRequest(route), HttpResponse.BodyHandlers.ofByteArray());
+                status = response.statusCode();
+                if (status == 201) {
+                    rememberId(objectMapper.readTree(response.body()).path("id").asLong(0));
+                }
+            } else {
+                status = client.send(buildRequest(route), HttpResponse.BodyHandlers.discarding()).statusCode();
+            }
+        } catch (IOException e) {
+            // Timeout, connexion refusée ou réinitialisée (pod tué) : équivalent du HTTP 000 de curl
+            status = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long endNanos = System.nanoTime();
+        stats.record(status, endNanos - intendedNanos, endNanos - sentNanos, endNanos >= measureFromNanos);
+    }
+
+    private HttpRequest buildRequest(Route route) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String base = options.baseUrl;
+        HttpRequest.Builder builder;
+        switch (route) {
+            case LIST -> builder = HttpRequest.newBuilder(URI.create(base + "/api/products?limit=50")).GET();
+            case GET -> builder = HttpRequest.newBuilder(URI.create(base + "/api/products/" + pickId(random))).GET();
+            case SEARCH -> {
+                String[] terms = searchTerms;
+                String term = terms[random.nextInt(terms.length)];
+                builder = HttpRequest.newBuilder(URI.create(base + "/api/products/search?name="
+                    + URLEncoder.encode(term, StandardCharsets.UTF_8))).GET();
+            }
+            case CREATE -> {
+                String body = "{\"name\":\"Load test " + random.nextInt(1_000_000) + "\","
+                    + "\"description\":\"Produit créé par LoadGenerator\","
+                    + "\"price\":\"" + (1 + random.nextInt(500)) + ".99\",\"quantity\":1000}";
+                builder = HttpRequest.newBuilder(URI.create(base + "/api/products"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            }
+            case STOCK -> {
+                // +1 / -1 : le stock des produits visés reste stable en moyenne
+                String body = "{\"quantityChange\":" + (random.nextBoolean() ? 1 : -1) + "}";
+                builder = HttpRequest.newBuilder(URI.create(base + "/api/products/" + pickId(random) + "/stock"))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body));
+            }
+            default -> throw new IllegalStateException("Route non gérée : " + route);
+        }
+        return builder.timeout(Duration.ofMillis(options.timeoutMs)).build();
+    }
+
+    /**
+     * Récupère une première page de produits : IDs pour get/stock, termes de recherche réalistes.
+     * Un serveur indisponible au démarrage n'empêche pas l'injection (expériences de chaos).
+     */
+    private void discoverData() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(options.baseUrl + "/api/products?limit=500"))
+                .timeout(Duration.ofMillis(options.timeoutMs))
+                .GET()
+                .build();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            Set<String> terms = new LinkedHashSet<>();
+            int ids = 0;
+            for (JsonNode item : objectMapper.readTree(response.body()).path("items")) {
+                rememberId(item.path("id").asLong(0));
+                ids++;
+                String[] words = item.path("name").asText("").toLowerCase(Locale.ROOT).split("\\s+");
+                if (words.length > 0 && words[0].length() >= 3) {
+                    terms.add(words[0].substring(0, Math.min(words[0].length(), 5)));
+                }
+            }
+            if (!terms.isEmpty()) {
+                searchTerms = terms.toArray(new String[0]);
+            }
+            System.out.println("   → Données découvertes : " + ids + " ID(s), " + searchTerms.length + " terme(s) de recherche");
+        } catch (IOException e) {
+            System.out.println("   ⚠️  Découverte impossible (" + e.getMessage() + ") : IDs et termes par défaut");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println();
+    }
+
+    private void rememberId(long id) {
+        if (id > 0) {
+            idPool.set((int) (idPoolWrites.getAndIncrement() % ID_POOL_SIZE), id);
+        }
+    }
+
+    private long pickId(ThreadLocalRandom random) {
+        int filled = (int) Math.min(idPoolWrites.get(), ID_POOL_SIZE);
+        return filled == 0 ? 1L : idPool.get(random.nextInt(filled));
+    }
+
+    private void reportIntervalSafely() {
+        try {
+            reportInterval();
+        } catch (Exception e) {
+            System.err.println("Erreur du rapport d'intervalle : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ligne de disponibilité de la dernière seconde, au format de traffic.sh (lue par collect_metrics) :
+     * FAILED si une requête a échoué (5xx, 000, abandon) ou si rien n'a abouti alors que des requêtes sont en vol
+     */
+    private synchronized void reportInterval() {
+        long completed = 0;
+        long failures = 0;
+        int failureStatus = 0;
+        Histogram interval = new Histogram(3);
+        long now = System.nanoTime();
+        // Intervalle mesuré s'il commence après l'échauffement (tolérance : gigue du planificateur)
+        boolean measured = intervalStartNanos >= measureFromNanos - TimeUnit.MILLISECONDS.toNanos(100);
+        if (measured && measuredSinceNanos == 0) {
+            measuredSinceNanos = intervalStartNanos;
+        }
+        intervalStartNanos = now;
+        for (RouteStats stats : routeStats.values()) {
+            RouteStats.Interval snapshot = stats.takeInterval(measured);
+            completed += snapshot.completed;
+            failures += snapshot.failures;
+            if (snapshot.failures > 0 && snapshot.lastFailureStatus != 0) {
+                failureStatus = snapshot.lastFailureStatus;
+            }
+            interval.add(snapshot.responseTime);
+        }
+
+        boolean stalled = completed == 0 && inFlight.get() > 0;
+        String metrics = String.format(Locale.ROOT, "rps=%d p50_ms=%.1f p99_ms=%.1f errors=%d in_flight=%d",
+            completed, millis(interval, 50.0), millis(interval, 99.0), failures, inFlight.get());
+        long timestamp = System.currentTimeMillis() / 1000;
+        if (failures == 0 && !stalled) {
+            System.out.println("[" + timestamp + "] WORKER=loadgen HTTP_STATUS=200 URL=" + options.baseUrl + " OK " + metrics);
+        } else {
+            System.out.println("[" + timestamp + "] WORKER=loadgen HTTP_STATUS=" + String.format("%03d", failureStatus)
+                + " URL=" + options.baseUrl + " FAILED " + metrics);
+        }
+    }
+
+    private void printFinalReport() {
+        double measuredSeconds = measuredSinceNanos == 0 ? 0 : (measureEndNanos - measuredSinceNanos) / 1e9;
+        Histogram allResponse = new Histogram(3);
+        Histogram allService = new Histogram(3);
+        RouteStats.Totals all = new RouteStats.Totals();
+        List<Map<String, Object>> routes = new ArrayList<>();
+
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("📈 Rapport de charge (hors échauffement)");
+        System.out.println("========================================");
+        for (RouteStats stats : routeStats.values()) {
+            if (stats.totals.total() == 0) {
+                continue;
+            }
+            allResponse.add(stats.totalResponse);
+            allService.add(stats.totalService);
+            all.add(stats.totals);
+            routes.add(printRoute(stats.route.label, stats.totals, stats.totalResponse, measuredSeconds, stats.statusCounts()));
+        }
+        Map<String, Object> total = printRoute("all", all, allResponse, measuredSeconds, null);
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "   → Débit obtenu : %.1f req/s (cible : %s req/s, mesure : %.1fs)",
+            measuredSeconds > 0 ? all.completed() / measuredSeconds : 0, options.rate, measuredSeconds));
+        System.out.println(String.format(Locale.ROOT,
+            "   → p99 temps de service (non corrigé) : %.2f ms, p99 temps de réponse (corrigé) : %.2f ms",
+            millis(allService, 99.0), millis(allResponse, 99.0)));
+        System.out.println();
+
+        if (options.jsonFile != null) {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("baseUrl", options.baseUrl);
+            report.put("targetRate", options.rate);
+            report.put("measuredSeconds", measuredSeconds);
+            report.put("mix", options.mixDescription());
+            report.put("routes", routes);
+            report.put("total", total);
+            try {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(options.jsonFile), report);
+                System.out.println("   → Rapport JSON : " + options.jsonFile);
+            } catch (IOException e) {
+                System.err.println("⚠️  Écriture du rapport JSON impossible : " + e.getMessage());
+            }
+        }
+    }
+
+    private static Map<String, Object> printRoute(String label, RouteStats.Totals totals, Histogram histogram,
+                                                  double seconds, Map<Integer, Long> statusCounts) {
+        double errorRate = totals.total() == 0 ? 0 : 100.0 * totals.errors() / totals.total();
+        double rps = seconds > 0 ? totals.completed() / seconds : 0;
+        System.out.println(String.format(Locale.ROOT,
+            "LATENCY route=%s count=%d ok=%d client_errors=%d errors=%d error_rate=%.2f%% rps=%.1f "
+                + "p50_ms=%.2f p90_ms=%.2f p99_ms=%.2f p99.9_ms=%.2f max_ms=%.2f",
+            label, totals.total(), totals.success, totals.clientErrors, totals.errors(), errorRate,
+            rps, millis(histogram, 50.0), millis(histogram, 90.0),
+            millis(histogram, 99.0), millis(histogram, 99.9), histogram.getMaxValue() / 1000.0));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("route", label);
+        result.put("count", totals.total());
+        result.put("ok", totals.success);
+        result.put("clientErrors", totals.clientErrors);
+        result.put("serverErrors", totals.serverErrors);
+        result.put("transportErrors", totals.transportErrors);
+        result.put("dropped", totals.dropped);
+        result.put("errorRate", errorRate);
+        result.put("p50Ms", millis(histogram, 50.0));
+        result.put("p90Ms", millis(histogram, 90.0));
+        result.put("p99Ms", millis(histogram, 99.0));
+        result.put("p999Ms", millis(histogram, 99.9));
+        result.put("maxMs", histogram.getMaxValue() / 1000.0);
+        if (statusCounts != null) {
+            result.put("statusCodes", statusCounts);
+        }
+        return result;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? 0 : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Mesures d'une route : enregistrement sans verrou côté requêtes (Recorder, LongAdder),
+     * agrégation par intervalle côté thread de rapport
+     */
+    static final class RouteStats {
+        final Route route;
+        // Temps de réponse depuis le départ prévu (corrigé) et temps de service depuis l'envoi réel, en µs
+        private final Recorder responseRecorder = new Recorder(3);
+        private final Recorder serviceRecorder = new Recorder(3);
+        private final LongAdder success = new LongAdder();
+        private final LongAdder clientErrors = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+        private final LongAdder transportErrors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final ConcurrentHashMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+        private volatile int lastFailureStatus = 0;
+
+        // Cumuls hors échauffement (thread de rapport uniquement)
+        final Histogram totalResponse = new Histogram(3);
+        final Histogram totalService = new Histogram(3);
+        final Totals totals = new Totals();
+        private final Totals previous = new Totals();
+        private Histogram intervalResponse;
+        private Histogram intervalService;
+
+        RouteStats(Route route) {
+            this.route = route;
+        }
+
+        void record(int status, long responseNanos, long serviceNanos, boolean measured) {
+            responseRecorder.recordValue(TimeUnit.NANOSECONDS.toMicros(responseNanos));
+            serviceRecorder.recordValue(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+            if (status == 0) {
+                transportErrors.increment();
+                lastFailureStatus = 0;
+            } else if (status >= 500) {
+                serverErrors.increment();
+                lastFailureStatus = status;
+            } else if (status >= 400) {
+                // 404 (produit supprimé), 400 (stock insuffisant) : réponses attendues, pas des pannes
+                clientErrors.increment();
+            } else {
+                success.increment();
+            }
+            if (measured) {
+                statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+            }
+        }
+
+        void recordDropped() {
+            dropped.increment();
+        }
+
+        /**
+         * Prend l'histogramme et les compteurs de l'intervalle écoulé ; les cumule s'il est hors échauffement
+         */
+        Interval takeInterval(boolean measured) {
+            intervalResponse = responseRecorder.getIntervalHistogram(intervalResponse);
+            intervalService = serviceRecorder.getIntervalHistogram(intervalService);
+
+            Totals current = new Totals();
+            current.success = success.sum();
+            current.clientErrors = clientErrors.sum();
+            current.serverErrors = serverErrors.sum();
+            current.transportErrors = transportErrors.sum();
+            current.dropped = dropped.sum();
+            Totals delta = current.minus(previous);
+            previous.set(current);
+
+            if (measured) {
+                totalResponse.add(intervalResponse);
+                totalService.add(intervalService);
+                totals.add(delta);
+            }
+            return new Interval(delta.completed() + delta.dropped, delta.errors(), lastFailureStatus, intervalResponse);
+        }
+
+        Map<Integer, Long> statusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+
+        record Interval(long completed, long failures, int lastFailureStatus, Histogram responseTime) {
+        }
+
+        /**
+         * Compteurs par classe de réponse
+         */
+        static final class Totals {
+            long success;
+            long clientErrors;
+            long serverErrors;
+            long transportErrors;
+            long dropped;
+
+            long completed() {
+                return success + clientErrors + serverErrors + transportErrors;
+            }
+
+            long errors() {
+                return serverErrors + transportErrors + dropped;
+            }
+
+            long total() {
+                return completed() + dropped;
+            }
+
+            void add(Totals other) {
+                success += other.success;
+                clientErrors += other.clientErrors;
+                serverErrors += other.serverErrors;
+                transportErrors += other.transportErrors;
+                dropped += other.dropped;
+            }
+
+            void set(Totals other) {
+                success = other.success;
+                clientErrors = other.clientErrors;
+                serverErrors = other.serverErrors;
+                transportErrors = other.transportErrors;
+                dropped = other.dropped;
+            }
+
+            Totals minus(Totals other) {
+                Totals result = new Totals();
+                result.success = success - other.success;
+                result.clientErrors = clientErrors - other.clientErrors;
+                result.serverErrors = serverErrors - other.serverErrors;
+                result.transportErrors = transportErrors - other.transportErrors;
+                result.dropped = dropped - other.dropped;
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Options de la ligne de commande
+     */
+    static class Options {
+        String baseUrl = "http://localhost:8080";
+        double rate = 200;
+        long durationSeconds = 60;
+        long warmupSeconds = 5;
+        long timeoutMs = 5000;
+        int maxInFlight = 10_000;
+        long seed = 42L;
+        String jsonFile;
+        // Poids relatifs par route (ordre de l'énumération)
+        final Map<Route, Integer> mix = new EnumMap<>(Route.class);
+        private Route[] routes;
+        private int[] cumulativeWeights;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            String mix = "list=30,get=40,search=15,create=5,stock=10";
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--url" -> options.baseUrl = stripTrailingSlash(value(args, ++i, "--url"));
+                    case "--rate" -> options.rate = Double.parseDouble(value(args, ++i, "--rate"));
+                    case "--duration" -> options.durationSeconds = Long.parseLong(value(args, ++i, "--duration"));
+                    case "--warmup" -> options.warmupSeconds = Long.parseLong(value(args, ++i, "--warmup"));
+                    case "--mix" -> mix = value(args, ++i, "--mix");
+                    case "--timeout" -> options.timeoutMs = Long.parseLong(value(args, ++i, "--timeout"));
+                    case "--max-in-flight" -> options.maxInFlight = Integer.parseInt(value(args, ++i, "--max-in-flight"));
+                    case "--seed" -> options.seed = Long.parseLong(value(args, ++i, "--seed"));
+                    case "--json" -> options.jsonFile = value(args, ++i, "--json");
+                    default -> throw new IllegalArgumentException("Option inconnue : " + args[i]);
+                }
+            }
+            if (options.rate <= 0) {
+                throw new IllegalArgumentException("--rate doit être positif");
+            }
+            if (options.durationSeconds < 0 || options.warmupSeconds < 0) {
+                throw new IllegalArgumentException("--duration et --warmup doivent être positifs ou nuls");
+            }
+            if (options.timeoutMs <= 0 || options.maxInFlight <= 0) {
+                throw new IllegalArgumentException("--timeout et --max-in-flight doivent être positifs");
+            }
+            URI.create(options.baseUrl);
+            options.parseMix(mix);
+            return options;
+        }
+
+        private void parseMix(String value) {
+            for (String part : value.split(",")) {
+                String[] entry = part.trim().split("=");
+                if (entry.length != 2) {
+                    throw new IllegalArgumentException("Entrée --mix invalide : " + part);
+                }
+                int weight = Integer.parseInt(entry[1].trim());
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Poids négatif dans --mix : " + part);
+                }
+                mix.put(Route.fromLabel(entry[0].trim().toLowerCase(Locale.ROOT)), weight);
+            }
+            List<Route> selected = new ArrayList<>();
+            List<Integer> cumulative = new ArrayList<>();
+            int sum = 0;
+            for (Map.Entry<Route, Integer> entry : mix.entrySet()) {
+                if (entry.getValue() > 0) {
+                    sum += entry.getValue();
+                    selected.add(entry.getKey());
+                    cumulative.add(sum);
+                }
+            }
+            if (sum == 0) {
+                throw new IllegalArgumentException("--mix doit contenir au moins une route de poids positif");
+            }
+            routes = selected.toArray(new Route[0]);
+            cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        Route pickRoute(SplittableRandom random) {
+            int draw = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (draw < cumulativeWeights[i]) {
+                    return routes[i];
+                }
+            }
+            return routes[routes.length - 1];
+        }
+
+        String mixDescription() {
+            StringBuilder description = new StringBuilder();
+            mix.forEach((route, weight) -> {
+                if (description.length() > 0) {
+                    description.append(',');
+                }
+                description.append(route.label).append('=').append(weight);
+            });
+            return description.toString();
+        }
+
+        private static String stripTrailingSlash(String url) {
+            return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Valeur manquante pour " + option);
+            }
+            return args[index];
+        }
+    }
+}
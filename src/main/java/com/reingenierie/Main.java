@@ -3,15 +3,28 @@ package com.reingenierie;
 import java.util.Map;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reingenierie.controller.DbAdmissionControl;
+import com.reingenierie.controller.EncodedResponseCache;
+import com.reingenierie.controller.ProductChangeStream;
 import com.reingenierie.controller.ProductController;
+import com.reingenierie.dao.ProductChangeNotifications;
+import com.reingenierie.metrics.C3p0PoolGauges;
+import com.reingenierie.metrics.ConnectionPoolMetrics;
+import com.reingenierie.metrics.HttpMetrics;
+import com.reingenierie.metrics.MeteredRouter;
+import com.reingenierie.service.HealthService;
+import com.reingenierie.service.ProductInvalidationListener;
 import com.reingenierie.service.ProductService;
 import com.reingenierie.util.DataInitializer;
+import com.reingenierie.util.EnvUtil;
 import com.reingenierie.util.HibernateUtil;
+import com.reingenierie.util.JsonUtil;
+import com.reingenierie.util.VirtualThreadPool;
 import io.javalin.Javalin;
+import io.javalin.http.Handler;
 import io.javalin.http.staticfiles.Location;
 import io.javalin.json.JavalinJackson;
+import org.eclipse.jetty.server.Server;
 
 public class Main {
     
@@ -38,14 +51,48 @@ public class Main {
             System.out.println("   Pour initialiser : kubectl run data-seed --image=productapp:latest -- java -cp app.jar com.reingenierie.admin.DataSeed");
         }
         
+        // Bus d'invalidation entre réplicas (LISTEN/NOTIFY PostgreSQL) : écoute établie avant de remplir les caches
+        ProductInvalidationListener invalidationListener = ProductChangeNotifications.isEnabled()
+            ? new ProductInvalidationListener(ProductChangeNotifications.INSTANCE_ID,
+                productService::invalidateRemote, productService::invalidateAllLocal,
+                EnvUtil.getEnvAsInt("INVALIDATION_POLL_MS", 10000),
+                EnvUtil.getEnvAsInt("INVALIDATION_RECONNECT_INITIAL_MS", 500),
+                EnvUtil.getEnvAsInt("INVALIDATION_RECONNECT_MAX_MS", 30000))
+            : null;
+        if (invalidationListener != null) {
+            invalidationListener.start(EnvUtil.getEnvAsInt("INVALIDATION_START_WAIT_MS", 5000));
+        }
+        
+        // Index de recherche en mémoire (SEARCH_INDEX_MODE=memory) chargé avant d'accepter du trafic
+        productService.loadSearchIndex();
+        // Statistiques d'inventaire calculées une fois, puis tenues à jour par les écritures
+        productService.startInventoryStats();
+        
         // Configurer Jackson pour supporter LocalDateTime (Java 8 Date/Time)
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper objectMapper = JsonUtil.createObjectMapper();
+        
+        // Mode threads virtuels : handlers exécutés sur des threads virtuels
+        boolean virtualThreads = EnvUtil.getEnvAsBoolean("HTTP_VIRTUAL_THREADS", false);
+        // Contrôle d'admission des routes base, quel que soit le modèle de threads : avec les 200 threads Jetty
+        // une rafale attend aussi le pool de connexions jusqu'à DB_CONNECTION_TIMEOUT ; avec des threads
+        // virtuels, plus rien ne la borne. Désactivable via DB_ADMISSION_CONTROL_ENABLED=false.
+        boolean admissionControl = EnvUtil.getEnvAsBoolean("DB_ADMISSION_CONTROL_ENABLED", true);
+        DbAdmissionControl dbAdmission = new DbAdmissionControl(
+            admissionControl,
+            EnvUtil.getEnvAsInt("DB_CONCURRENCY_PERMITS", HibernateUtil.getConnectionPoolMaxSize()),
+            EnvUtil.getEnvAsInt("DB_QUEUE_WAIT_BUDGET_MS", 200),
+            EnvUtil.getEnvAsInt("DB_QUEUE_MAX_WAITERS", 1000),
+            EnvUtil.getEnvAsInt("DB_QUEUE_RETRY_AFTER_SECONDS", 1));
         
         // Créer l'application Javalin (Backend API uniquement - pas de fichiers statiques)
         Javalin app = Javalin.create(config -> {
             config.jsonMapper(new JavalinJackson(objectMapper));
+            // Taille maximale du corps de requête (imports en lot via /api/products/batch)
+            config.http.maxRequestSize = EnvUtil.getEnvAsInt("HTTP_MAX_REQUEST_SIZE_MB", 64) * 1024L * 1024L;
+            if (virtualThreads) {
+                // Un thread virtuel par tâche Jetty (sélecteurs compris), sans dépendre de l'API de QueuedThreadPool
+                config.jetty.server(() -> new Server(new VirtualThreadPool("JettyServerThreadPool")));
+            }
             // Retirer le service de fichiers statiques pour architecture 3-tiers
             // config.staticFiles.add("/public", Location.CLASSPATH);
             
@@ -65,38 +112,111 @@ public class Main {
             });
         }).start(port);
         
-        System.out.println("Application démarrée sur le port " + port);
+        System.out.println("Application démarrée sur le port " + port
+            + (virtualThreads ? " (threads virtuels)" : "")
+            + (admissionControl ? " - contrôle d'admission base actif" : ""));
+        
+        // Cache des réponses encodées (JSON, CBOR, Smile) (et précompressées), invalidé par les écritures
+        EncodedResponseCache responseCache = new EncodedResponseCache(
+            EnvUtil.getEnvAsBoolean("RESPONSE_CACHE_ENABLED", true),
+            EnvUtil.getEnvAsInt("RESPONSE_CACHE_MAX_MB", 64) * 1024L * 1024L,
+            EnvUtil.getEnvAsInt("RESPONSE_CACHE_GZIP_MIN_BYTES", 1024));
+        productService.addChangeListener(responseCache::invalidate);
         
         // Contrôleur
-        ProductController productController = new ProductController();
+        ProductController productController = new ProductController(productService, responseCache);
+        // Flux SSE des modifications (un thread virtuel par abonné, tampon partagé borné)
+        ProductChangeStream changeStream = new ProductChangeStream(productService.getChangeFeed(),
+            EnvUtil.getEnvAsInt("CHANGE_FEED_KEEPALIVE_MS", 15000),
+            EnvUtil.getEnvAsInt("CHANGE_FEED_MAX_SUBSCRIBERS", 1000));
+        
+        // Métriques : chaque route enregistrée via le routeur est mesurée (latence, codes HTTP, erreurs)
+        HttpMetrics httpMetrics = new HttpMetrics();
+        MeteredRouter routes = new MeteredRouter(app, httpMetrics);
+        httpMetrics.registerGauge("product_cache_size", "Entrées dans le cache produits",
+            () -> productService.getCacheStats().size);
+        httpMetrics.registerGauge("product_cache_hit_ratio", "Taux de succès du cache produits (0-1)",
+            () -> productService.getCacheStats().hitRate);
+        httpMetrics.registerGauge("inventory_products", "Nombre de produits (statistiques d'inventaire)",
+            () -> productService.getInventoryStats().totalProducts);
+        httpMetrics.registerGauge("inventory_units", "Unités en stock, tous produits confondus",
+            () -> productService.getInventoryStats().totalUnits);
+        httpMetrics.registerGauge("inventory_value", "Valeur du stock (somme de prix × quantité)",
+            () -> productService.getInventoryStats().inventoryValue.doubleValue());
+        httpMetrics.registerGauge("inventory_low_stock_products", "Produits sous le seuil STATS_LOW_STOCK_THRESHOLD",
+            () -> productService.getInventoryStats().lowStockCount);
+        ConnectionPoolMetrics poolMetrics = HibernateUtil.getConnectionPoolMetrics();
+        if (poolMetrics != null) {
+            poolMetrics.register(httpMetrics);
+        } else if (HibernateUtil.getConnectionPoolGauges() instanceof C3p0PoolGauges c3p0Gauges) {
+            c3p0Gauges.register(httpMetrics);
+        }
+        dbAdmission.register(httpMetrics);
+        httpMetrics.registerGauge("product_changes_subscribers", "Abonnés connectés au flux SSE des modifications",
+            changeStream::subscriberCount);
+        httpMetrics.registerCounter("product_export_aborted_total",
+            "Exports du catalogue coupés en cours de flux (connexion interrompue)", productController::abortedExportCount);
+        httpMetrics.registerCounter("product_changes_events_sent_total", "Événements envoyés aux abonnés du flux SSE",
+            changeStream::sentEventCount);
+        httpMetrics.registerCounter("product_changes_dropped_subscribers_total",
+            "Abonnés du flux SSE déconnectés car dépassés par le tampon", changeStream::droppedSubscriberCount);
+        if (invalidationListener != null) {
+            httpMetrics.registerGauge("product_invalidation_connected", "Écoute LISTEN du bus d'invalidation active (1) ou non (0)",
+                () -> invalidationListener.isConnected() ? 1 : 0);
+            httpMetrics.registerCounter("product_invalidation_received_total",
+                "Notifications d'invalidation reçues des autres réplicas", invalidationListener::receivedCount);
+            httpMetrics.registerCounter("product_invalidation_reconnects_total",
+                "Pertes ou échecs de connexion de l'écoute du bus d'invalidation", invalidationListener::reconnectCount);
+            httpMetrics.registerCounter("product_invalidation_resyncs_total",
+                "Vidages complets des caches locaux (reconnexion ou écriture massive)", invalidationListener::resyncCount);
+        }
         
         // Routes API - La route "/" sert automatiquement index.html grâce aux fichiers statiques
         // app.get("/", ctx -> ctx.result("Application de Réingénierie Logicielle - API REST"));
         
-        app.get("/api/health", ctx -> {
-            // Vérifier la connexion DB
-            try {
-                productService.getAllProducts(); // Test DB
-                ctx.json(Map.of("status", "UP", "database", "connected"));
-            } catch (Exception e) {
-                ctx.status(503).json(Map.of("status", "DOWN", "database", "disconnected"));
-            }
-        });
+        // Sondes de santé : état en cache rafraîchi en arrière-plan, aucune requête SQL par appel
+        HealthService healthService = new HealthService(productService, HibernateUtil.getConnectionPoolGauges(),
+            EnvUtil.getEnvAsInt("HEALTH_CHECK_INTERVAL_MS", 1000),
+            EnvUtil.getEnvAsInt("HEALTH_CHECK_STALE_MS", 5000),
+            EnvUtil.getEnvAsInt("HEALTH_POOL_MAX_PENDING", HibernateUtil.getConnectionPoolMaxSize()));
+        healthService.start();
+        httpMetrics.registerGauge("health_ready", "Pod prêt à recevoir du trafic (1) ou non (0)",
+            () -> healthService.isReady() ? 1 : 0);
         
-        // CRUD Products
-        app.get("/api/products", productController::getAllProducts);
-        app.get("/api/products/{id}", productController::getProductById);
-        app.post("/api/products", productController::createProduct);
-        app.put("/api/products/{id}", productController::updateProduct);
-        app.delete("/api/products/{id}", productController::deleteProduct);
+        routes.get("/api/health/live", ctx -> ctx.json(healthService.liveness()));
+        Handler readiness = ctx -> ctx.status(healthService.isReady() ? 200 : 503).json(healthService.readiness());
+        routes.get("/api/health/ready", readiness);
+        // Compatibilité (docker-compose, scripts de chaos) : même réponse que la readiness
+        routes.get("/api/health", readiness);
+        
+        // CRUD Products (routes accédant à la base : soumises au contrôle d'admission)
+        routes.get("/api/products", dbAdmission.guard(productController::getAllProducts));
+        routes.get("/api/products/export", dbAdmission.guard(productController::exportProducts));
+        // Flux SSE (avant /api/products/{id}) : connexion longue, ni mesurée ni soumise au contrôle d'admission
+        app.sse("/api/products/changes", changeStream::handle);
+        routes.get("/api/products/{id}", dbAdmission.guard(productController::getProductById));
+        routes.post("/api/products", dbAdmission.guard(productController::createProduct));
+        routes.post("/api/products/batch", dbAdmission.guard(productController::batchProducts));
+        routes.put("/api/products/{id}", dbAdmission.guard(productController::updateProduct));
+        routes.delete("/api/products/{id}", dbAdmission.guard(productController::deleteProduct));
         
         // Recherche et statistiques
-        app.get("/api/products/search", productController::searchProducts);
-        app.patch("/api/products/{id}/stock", productController::updateStock);
-        app.get("/api/stats", productController::getStats);
+        routes.get("/api/products/search", dbAdmission.guard(productController::searchProducts));
+        routes.patch("/api/products/{id}/stock", dbAdmission.guard(productController::updateStock));
+        // Statistiques servies depuis la mémoire : pas de contrôle d'admission
+        routes.get("/api/stats", productController::getStats);
+        routes.get("/api/stats/cache", productController::getCacheStats);
+        routes.get("/api/stats/stock", productController::getStockWriteBehindStats);
+        routes.get("/api/stats/pool", productController::getConnectionPoolStats);
+        routes.get("/api/stats/changes", ctx -> ctx.json(changeStream.stats()));
+        routes.get("/api/stats/invalidation", ctx -> ctx.json(invalidationListener != null
+            ? invalidationListener.stats() : Map.of("enabled", false)));
+        
+        // Métriques Prometheus (non mesurée elle-même : la collecte ne pollue pas les histogrammes)
+        app.get("/api/metrics", httpMetrics::scrape);
         
         // Endpoint pour "casser" l'application (pour tests Kubernetes)
-        app.post("/api/crash", ctx -> {
+        routes.post("/api/crash", ctx -> {
             System.err.println("Endpoint /api/crash appelé - Arrêt de l'application!");
             ctx.result("Application en cours d'arrêt...");
             new Thread(() -> {
@@ -112,7 +232,12 @@ public class Main {
         // Hook d'arrêt propre
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Arrêt de l'application...");
+            healthService.shutdown();
+            if (invalidationListener != null) {
+                invalidationListener.shutdown();
+            }
             app.stop();
+            productService.shutdown();
             HibernateUtil.shutdown();
             System.out.println("Application arrêtée proprement.");
         }));
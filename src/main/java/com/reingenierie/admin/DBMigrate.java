@@ -1,5 +1,6 @@
 package com.reingenierie.admin;
 
+import com.reingenierie.util.EnvUtil;
 import com.reingenierie.util.HibernateUtil;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityTransaction;
@@ -65,12 +66,132 @@ public class DBMigrate {
             ON products(name);
             """
         ),
+        // Product n'a pas (encore) de colonne category : l'index n'est créé que si la colonne existe,
+        // sinon la migration est sans effet (elle échouait et bloquait toutes les suivantes)
         new Migration(
             "003",
-            "Ajout d'index sur products.category",
+            "Ajout d'index sur products.category (si la colonne existe)",
             """
-            CREATE INDEX IF NOT EXISTS idx_products_category 
-            ON products(category);
+            DO $$
+            BEGIN
+                IF EXISTS (SELECT 1 FROM information_schema.columns
+                           WHERE table_name = 'products' AND column_name = 'category') THEN
+                    CREATE INDEX IF NOT EXISTS idx_products_category ON products(category);
+                END IF;
+            END $$;
+            """
+        ),
+        new Migration(
+            "004",
+            "Index trigramme (pg_trgm) sur lower(name)",
+            """
+            CREATE EXTENSION IF NOT EXISTS pg_trgm;
+            CREATE INDEX IF NOT EXISTS idx_products_name_trgm
+            ON products USING gin (lower(name) gin_trgm_ops);
+            """
+        ),
+        new Migration(
+            "005",
+            "Colonne version (verrouillage optimiste)",
+            """
+            ALTER TABLE products ADD COLUMN IF NOT EXISTS version BIGINT;
+            UPDATE products SET version = 0 WHERE version IS NULL;
+            ALTER TABLE products ALTER COLUMN version SET DEFAULT 0;
+            ALTER TABLE products ALTER COLUMN version SET NOT NULL;
+            """
+        ),
+        new Migration(
+            "006",
+            "Séquence products_id_seq par pas de 50 (pooled)",
+            """
+            DO $$
+            BEGIN
+                IF EXISTS (SELECT 1 FROM information_schema.columns
+                           WHERE table_name = 'products' AND column_name = 'id' AND is_identity = 'YES') THEN
+                    ALTER TABLE products ALTER COLUMN id SET INCREMENT BY 50;
+                ELSIF EXISTS (SELECT 1 FROM pg_class WHERE relkind = 'S' AND relname = 'products_id_seq') THEN
+                    ALTER SEQUENCE products_id_seq INCREMENT BY 50;
+                ELSE
+                    CREATE SEQUENCE products_id_seq START WITH 1 INCREMENT BY 50;
+                    PERFORM setval('products_id_seq', COALESCE((SELECT MAX(id) FROM products), 0) + 50, false);
+                END IF;
+            END $$;
+            """
+        ),
+        // Index composites (colonne, id) des filtres et tris de GET /api/products (voir ProductQuery) :
+        // bornes sur la colonne + ordre (colonne, id) du curseur servis par un seul parcours d'index
+        new Migration(
+            "007",
+            "Index composite products(price, id)",
+            """
+            CREATE INDEX IF NOT EXISTS idx_products_price_id
+            ON products(price, id);
+            """
+        ),
+        new Migration(
+            "008",
+            "Index composite products(quantity, id)",
+            """
+            CREATE INDEX IF NOT EXISTS idx_products_quantity_id
+            ON products(quantity, id);
+            """
+        ),
+        new Migration(
+            "009",
+            "Index composite products(created_at, id)",
+            """
+            CREATE INDEX IF NOT EXISTS idx_products_created_at_id
+            ON products(created_at, id);
+            """
+        ),
+        new Migration(
+            "010",
+            "Index composite products(updated_at, id)",
+            """
+            CREATE INDEX IF NOT EXISTS idx_products_updated_at_id
+            ON products(updated_at, id);
+            ANALYZE products;
+            """
+        ),
+        new Migration(
+            "011",
+            "Synchronisation différentielle : updated_at obligatoire et table product_tombstones",
+            """
+            UPDATE products SET updated_at = created_at WHERE updated_at IS NULL;
+            ALTER TABLE products ALTER COLUMN updated_at SET NOT NULL;
+            CREATE TABLE IF NOT EXISTS product_tombstones (
+                product_id BIGINT PRIMARY KEY,
+                deleted_at TIMESTAMP NOT NULL
+            );
+            CREATE INDEX IF NOT EXISTS idx_product_tombstones_deleted_at_id
+            ON product_tombstones(deleted_at, product_id);
+            """
+        ),
+        // Horodatages de la synchronisation différentielle pris sur l'horloge de la base (début de la transaction
+        // d'écriture), comme le watermark (ProductDAO.changeSyncHorizon) : plus de décalage d'horloge entre pods.
+        // productapp.keep_timestamps=on (SET LOCAL) conserve les valeurs fournies : chargement de données (DataSeed)
+        new Migration(
+            "012",
+            "updated_at / deleted_at renseignés par la base (triggers)",
+            """
+            CREATE OR REPLACE FUNCTION products_set_updated_at() RETURNS trigger AS $$
+            BEGIN
+                IF COALESCE(current_setting('productapp.keep_timestamps', true), '') <> 'on' THEN
+                    NEW.updated_at := LOCALTIMESTAMP;
+                END IF;
+                RETURN NEW;
+            END $$ LANGUAGE plpgsql;
+            DROP TRIGGER IF EXISTS trg_products_updated_at ON products;
+            CREATE TRIGGER trg_products_updated_at BEFORE INSERT OR UPDATE ON products
+            FOR EACH ROW EXECUTE FUNCTION products_set_updated_at();
+            CREATE OR REPLACE FUNCTION product_tombstones_set_deleted_at() RETURNS trigger AS $$
+            BEGIN
+                NEW.deleted_at := LOCALTIMESTAMP;
+                RETURN NEW;
+            END $$ LANGUAGE plpgsql;
+            DROP TRIGGER IF EXISTS trg_product_tombstones_deleted_at ON product_tombstones;
+            CREATE TRIGGER trg_product_tombstones_deleted_at BEFORE INSERT OR UPDATE ON product_tombstones
+            FOR EACH ROW EXECUTE FUNCTION product_tombstones_set_deleted_at();
             """
         )
         // Ajouter ici de futures migrations...
@@ -82,6 +203,7 @@ public class DBMigrate {
         long startTime = System.currentTimeMillis();
         int applied = 0;
         int skipped = 0;
+        Migration current = null;
         
         try {
             // Mode : status only
@@ -93,7 +215,11 @@ public class DBMigrate {
             // Mode : version spécifique
             String targetVersion = args.length > 0 ? args[0] : null;
             
-            // Initialiser Hibernate
+            // Initialiser Hibernate (hbm2ddl). La séquence n'a peut-être pas encore le pas de 50 attendu par
+            // Product : Hibernate s'y aligne pour ce processus au lieu d'échouer, la migration 006 la corrige
+            if (EnvUtil.getEnv("DB_SEQUENCE_MISMATCH_STRATEGY", null) == null) {
+                System.setProperty("DB_SEQUENCE_MISMATCH_STRATEGY", "fix");
+            }
             EntityManager em = HibernateUtil.getEntityManager();
             em.close();
             
@@ -120,6 +246,7 @@ public class DBMigrate {
                     System.out.println("   → " + migration.description);
                     skipped++;
                 } else {
+                    current = migration;
                     System.out.println("🔄 Migration " + migration.version + " : EN COURS...");
                     System.out.println("   → " + migration.description);
                     
@@ -128,6 +255,7 @@ public class DBMigrate {
                     long migrationTime = System.currentTimeMillis() - migrationStart;
                     
                     System.out.println("✅ Migration " + migration.version + " : SUCCÈS (" + migrationTime + "ms)");
+                    current = null;
                     applied++;
                 }
                 System.out.println("");
@@ -153,6 +281,13 @@ public class DBMigrate {
             System.err.println("Message : " + e.getMessage());
             e.printStackTrace();
             System.err.println("");
+            if (current != null) {
+                // Les migrations sont appliquées dans l'ordre : un échec bloque toutes les suivantes
+                System.err.println("❌ Migration en échec : " + current.version + " (" + current.description + ")");
+                System.err.println("   → Migrations non appliquées : " + String.join(", ", versionsFrom(current)));
+                System.err.println("   → Corriger la migration puis relancer DBMigrate (les migrations appliquées sont skippées)");
+                System.err.println("");
+            }
             
             // Fermer proprement Hibernate
             try {
@@ -168,7 +303,7 @@ public class DBMigrate {
     /**
      * Obtenir une connexion JDBC directe (pour exécuter du SQL brut)
      */
-    private static Connection getJdbcConnection() throws SQLException {
+    static Connection getJdbcConnection() throws SQLException {
         String host = System.getenv().getOrDefault("DB_HOST", "localhost");
         String port = System.getenv().getOrDefault("DB_PORT", "5432");
         String dbName = System.getenv().getOrDefault("DB_NAME", "productdb");
@@ -180,6 +315,36 @@ public class DBMigrate {
         return DriverManager.getConnection(url, user, password);
     }
     
+    /**
+     * Versions de {@code from} à la dernière migration (bloquées par l'échec de {@code from})
+     */
+    private static List<String> versionsFrom(Migration from) {
+        List<String> versions = new ArrayList<>();
+        for (int i = MIGRATIONS.indexOf(from); i < MIGRATIONS.size(); i++) {
+            versions.add(MIGRATIONS.get(i).version);
+        }
+        return versions;
+    }
+    
+    /**
+     * Migrations non appliquées (ou en échec), dans l'ordre : liste vide si le schéma est à jour.
+     * Sans table schema_migrations, aucune migration n'a été appliquée.
+     */
+    public static List<String> pendingMigrations(Connection conn) throws SQLException {
+        List<String> pending = new ArrayList<>();
+        boolean tableExists;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT to_regclass('" + MIGRATIONS_TABLE + "') IS NOT NULL")) {
+            tableExists = rs.next() && rs.getBoolean(1);
+        }
+        for (Migration migration : MIGRATIONS) {
+            if (!tableExists || !isMigrationApplied(conn, migration.version)) {
+                pending.add(migration.version);
+            }
+        }
+        return pending;
+    }
+    
     /**
      * Créer la table schema_migrations si elle n'existe pas
      */
@@ -1,63 +1,95 @@
 package com.reingenierie.admin;
 
+import com.reingenierie.dao.ProductChangeNotifications;
 import com.reingenierie.service.ProductService;
 import com.reingenierie.util.DataInitializer;
 import com.reingenierie.util.HibernateUtil;
 
+import java.sql.Connection;
+import java.sql.Statement;
+
 /**
  * Tâche admin one-off : Initialisation des données de test
- * 
+ *
  * Cette classe doit être exécutée manuellement une seule fois après le déploiement initial.
  * Conforme au principe XII des 12-Factor Apps (Admin Processes).
- * 
+ *
  * Usage:
+ *   java -cp app.jar com.reingenierie.admin.DataSeed [--count N] [--seed S] [--threads T] [--force]
+ *
+ * Options:
+ *   --count N    Génère N produits synthétiques (reproductibles) chargés via COPY
+ *                (sans --count : jeu de 15 produits mockés)
+ *   --seed S     Graine du générateur (défaut : 42) : même graine = même jeu de données
+ *   --threads T  Nombre de workers COPY en parallèle (défaut : nombre de CPU)
+ *   --force      Vide la table products avant l'initialisation (au lieu d'annuler si non vide)
+ *
+ * Exemples:
  *   java -cp app.jar com.reingenierie.admin.DataSeed
- * 
+ *   java -cp app.jar com.reingenierie.admin.DataSeed --count 10000000 --seed 7 --force
+ *
  * Kubernetes:
  *   kubectl run data-seed --rm -it --image=productapp:latest \
  *     --restart=Never --namespace=productapp \
  *     -- java -cp app.jar com.reingenierie.admin.DataSeed
  */
 public class DataSeed {
-    
+
     public static void main(String[] args) {
         long startTime = System.currentTimeMillis();
-        
+
         System.out.println("========================================");
         System.out.println("🌱 DataSeed - Initialisation des données");
         System.out.println("========================================");
         System.out.println();
-        
+
         try {
+            Options options = Options.parse(args);
+
             // Créer le service
             ProductService productService = new ProductService();
-            
+
             // Vérifier si des données existent déjà (idempotence)
-            int existingProducts = productService.getAllProducts().size();
-            
-            if (existingProducts > 0) {
+            long existingProducts = productService.getProductCount();
+
+            if (existingProducts > 0 && !options.force) {
                 System.out.println("⚠️  Base de données non vide :");
                 System.out.println("   → " + existingProducts + " produit(s) existant(s)");
                 System.out.println();
                 System.out.println("❌ Initialisation annulée (idempotence)");
                 System.out.println("   Pour forcer la réinitialisation :");
                 System.out.println("   1. Supprimer manuellement les produits");
-                System.out.println("   2. Ou ajouter un flag --force (à implémenter)");
+                System.out.println("   2. Ou relancer avec le flag --force");
                 System.out.println();
                 System.exit(0);
             }
-            
+
+            if (existingProducts > 0) {
+                System.out.println("⚠️  --force : suppression des " + existingProducts + " produit(s) existant(s)...");
+                truncateProducts();
+                System.out.println();
+            }
+
             System.out.println("✅ Base de données vide - Démarrage de l'initialisation...");
             System.out.println();
-            
-            // Initialiser les données
-            DataInitializer dataInitializer = new DataInitializer(productService);
-            dataInitializer.initializeMockData();
-            
-            // Vérifier le résultat
-            int insertedProducts = productService.getAllProducts().size();
+
+            long insertedProducts;
+            if (options.count != null) {
+                // Génération massive : COPY en parallèle
+                System.out.println("📦 Génération de " + options.count + " produits (seed=" + options.seed
+                    + ", threads=" + options.threads + ")");
+                ProductCopyLoader loader = new ProductCopyLoader(options.seed, options.threads);
+                insertedProducts = loader.load(options.count);
+            } else {
+                // Initialiser les données
+                DataInitializer dataInitializer = new DataInitializer(productService);
+                dataInitializer.initializeMockData();
+                insertedProducts = productService.getProductCount();
+            }
+            notifyRunningPods();
+
             long duration = System.currentTimeMillis() - startTime;
-            
+
             System.out.println();
             System.out.println("========================================");
             System.out.println("✅ Initialisation terminée avec succès");
@@ -65,11 +97,14 @@ public class DataSeed {
             System.out.println("📊 Rapport :");
             System.out.println("   → Produits insérés : " + insertedProducts);
             System.out.println("   → Durée : " + duration + "ms");
+            if (duration > 0) {
+                System.out.println("   → Débit : " + (insertedProducts * 1000 / duration) + " produits/s");
+            }
             System.out.println();
-            
+
             // Succès
             System.exit(0);
-            
+
         } catch (Exception e) {
             System.err.println();
             System.err.println("========================================");
@@ -80,10 +115,10 @@ public class DataSeed {
             System.err.println("Stack trace :");
             e.printStackTrace();
             System.err.println();
-            
+
             // Échec
             System.exit(1);
-            
+
         } finally {
             // Toujours fermer Hibernate proprement
             try {
@@ -94,4 +129,62 @@ public class DataSeed {
             }
         }
     }
+
+    /**
+     * Vider la table products (--force)
+     */
+    private static void truncateProducts() throws Exception {
+        try (Connection conn = DBMigrate.getJdbcConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE TABLE products");
+        }
+        // Écriture hors Hibernate : le COUNT mis en cache n'est plus valable
+        HibernateUtil.evictAllCaches();
+    }
+
+    /**
+     * Bus d'invalidation : les pods en cours d'exécution vident leurs caches (TRUNCATE et COPY ne passent
+     * pas par ProductDAO, aucune notification par produit n'a été émise)
+     */
+    private static void notifyRunningPods() throws Exception {
+        try (Connection conn = DBMigrate.getJdbcConnection()) {
+            ProductChangeNotifications.sendAll(conn);
+        }
+    }
+
+    /**
+     * Options de la ligne de commande
+     */
+    private static class Options {
+        Long count;
+        long seed = 42L;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean force;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--force" -> options.force = true;
+                    case "--count" -> options.count = Long.parseLong(value(args, ++i, "--count"));
+                    case "--seed" -> options.seed = Long.parseLong(value(args, ++i, "--seed"));
+                    case "--threads" -> options.threads = Integer.parseInt(value(args, ++i, "--threads"));
+                    default -> throw new IllegalArgumentException("Option inconnue : " + args[i]);
+                }
+            }
+            if (options.count != null && options.count <= 0) {
+                throw new IllegalArgumentException("--count doit être positif");
+            }
+            if (options.threads <= 0) {
+                throw new IllegalArgumentException("--threads doit être positif");
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Valeur manquante pour " + option);
+            }
+            return args[index];
+        }
+    }
 }
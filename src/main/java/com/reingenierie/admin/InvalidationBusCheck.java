@@ -0,0 +1,151 @@
+package com.reingenierie.admin;
+
+import com.reingenierie.dao.ProductChangeNotifications;
+import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.model.Product;
+import com.reingenierie.service.ProductInvalidationListener;
+import com.reingenierie.util.HibernateUtil;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InvalidationBusCheck - Tâche admin one-off : vérifie le bus d'invalidation entre réplicas (LISTEN/NOTIFY)
+ * sur une vraie base PostgreSQL, sans démarrer le serveur
+ *
+ * - un ProductInvalidationListener écoute product_changes (sans ignorer ce processus, qui joue ici les deux rôles)
+ * - création, ajustement de stock et suppression via ProductDAO : chaque écriture doit être notifiée
+ * - NOTIFY dans une transaction annulée : rien ne doit être reçu
+ * - pg_terminate_backend sur la connexion d'écoute : reconnexion et vidage complet attendus,
+ *   puis une nouvelle écriture doit de nouveau être notifiée
+ *
+ * En local :
+ *   docker run -d --name pg -p 5432:5432 -e POSTGRES_DB=productdb -e POSTGRES_PASSWORD=postgres postgres:16
+ *   java -cp app.jar com.reingenierie.admin.DBMigrate
+ *   java -cp app.jar com.reingenierie.admin.InvalidationBusCheck
+ *
+ * Codes de sortie : 0 (toutes les vérifications passent), 1 (échec ou erreur)
+ */
+public class InvalidationBusCheck {
+
+    // Délai maximal de réception d'une notification (et de reconnexion)
+    private static final long TIMEOUT_MS = 10000;
+
+    private static final BlockingQueue<Long> received = new LinkedBlockingQueue<>();
+
+    public static void main(String[] args) {
+        System.out.println("");
+        System.out.println("========================================");
+        System.out.println("📡 InvalidationBusCheck - Bus d'invalidation LISTEN/NOTIFY");
+        System.out.println("========================================");
+        System.out.println("");
+
+        int exitCode;
+        ProductInvalidationListener listener = null;
+        try {
+            if (!ProductChangeNotifications.isEnabled()) {
+                throw new IllegalStateException("Bus désactivé (CACHE_INVALIDATION_BUS_ENABLED=false ou base autre que PostgreSQL)");
+            }
+            listener = new ProductInvalidationListener(null, received::addAll, () -> { }, 1000, 200, 2000);
+            listener.start(TIMEOUT_MS);
+            exitCode = runChecks(listener, new ProductDAO()) ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("❌ ERREUR lors de la vérification du bus : " + e.getMessage());
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        if (listener != null) {
+            listener.shutdown();
+        }
+        try {
+            HibernateUtil.shutdown();
+        } catch (Exception shutdownEx) {
+            // Ignorer les erreurs de shutdown
+        }
+        System.exit(exitCode);
+    }
+
+    private static boolean runChecks(ProductInvalidationListener listener, ProductDAO productDAO) throws Exception {
+        int failures = 0;
+        failures += report("Écoute établie (pid " + listener.backendPid() + ")", listener.isConnected());
+
+        Product product = productDAO.create(new Product("invalidation-check", "Produit de test du bus d'invalidation",
+            new BigDecimal("1.00"), 10));
+        Long id = product.getId();
+        failures += report("Création du produit " + id + " notifiée", awaitId(id));
+
+        productDAO.adjustQuantity(id, -1);
+        failures += report("Ajustement de stock notifié", awaitId(id));
+
+        // NOTIFY dans une transaction annulée : PostgreSQL ne délivre rien
+        try (Connection conn = DBMigrate.getJdbcConnection()) {
+            conn.setAutoCommit(false);
+            ProductChangeNotifications.send(conn, List.of(-id));
+            conn.rollback();
+        }
+        failures += report("Aucune notification après un rollback", !awaitId(-id, 1000));
+
+        long resyncsBefore = listener.resyncCount();
+        try (Connection conn = DBMigrate.getJdbcConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT pg_terminate_backend(?)")) {
+            stmt.setInt(1, listener.backendPid());
+            stmt.executeQuery().close();
+        }
+        failures += report("Reconnexion et vidage complet après la coupure", awaitResync(listener, resyncsBefore));
+
+        productDAO.delete(id);
+        failures += report("Suppression notifiée après la reconnexion", awaitId(id));
+
+        System.out.println("");
+        System.out.println("========================================");
+        if (failures == 0) {
+            System.out.println("✅ Bus d'invalidation opérationnel");
+        } else {
+            System.out.println("❌ " + failures + " vérification(s) en échec");
+        }
+        System.out.println("========================================");
+        return failures == 0;
+    }
+
+    private static int report(String description, boolean ok) {
+        System.out.println((ok ? "✅ " : "❌ ") + description);
+        return ok ? 0 : 1;
+    }
+
+    private static boolean awaitId(Long id) throws InterruptedException {
+        return awaitId(id, TIMEOUT_MS);
+    }
+
+    /**
+     * Attend la notification de {@code id} (les autres IDs reçus entre-temps sont ignorés)
+     */
+    private static boolean awaitId(Long id, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long remaining = timeoutMs;
+        while (remaining > 0) {
+            Long next = received.poll(remaining, TimeUnit.MILLISECONDS);
+            if (id.equals(next)) {
+                return true;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return false;
+    }
+
+    private static boolean awaitResync(ProductInvalidationListener listener, long resyncsBefore) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (listener.resyncCount() > resyncsBefore && listener.isConnected()) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,184 @@
+package com.reingenierie.admin;
+
+import com.reingenierie.model.Product;
+import com.reingenierie.util.ProductDataGenerator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chargement massif de produits synthétiques via le protocole COPY de PostgreSQL (CopyManager PgJDBC)
+ *
+ * - N workers en parallèle, chacun avec sa propre connexion et ses propres COPY
+ * - chaque worker génère et envoie ses lignes en CSV au fil de l'eau (mémoire constante)
+ * - les IDs sont réservés dans products_id_seq par blocs (un nextval = un bloc de increment_by IDs,
+ *   compatible avec l'optimiseur "pooled" d'Hibernate) : pas de collision avec l'application
+ */
+class ProductCopyLoader {
+
+    // Lignes par COPY (une transaction par chunk)
+    private static final int CHUNK_SIZE = 50_000;
+    // Taille du tampon envoyé au serveur à chaque writeToCopy
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final String COPY_SQL =
+        "COPY products (id, name, description, price, quantity, created_at, updated_at, version) "
+        + "FROM STDIN WITH (FORMAT csv)";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ProductDataGenerator generator;
+    private final int threads;
+    private final AtomicLong loaded = new AtomicLong();
+
+    ProductCopyLoader(long seed, int threads) {
+        this.generator = new ProductDataGenerator(seed);
+        this.threads = threads;
+    }
+
+    /**
+     * Génère et charge {@code count} produits ; retourne le nombre de lignes insérées
+     */
+    long load(long count) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long start = 0; start < count; start += CHUNK_SIZE) {
+                long from = start;
+                long to = Math.min(start + CHUNK_SIZE, count);
+                futures.add(executor.submit(() -> {
+                    loadChunk(from, to);
+                    return null;
+                }));
+            }
+            long lastReport = 0;
+            for (Future<?> future : futures) {
+                future.get();
+                long done = loaded.get();
+                if (done - lastReport >= 500_000 || done == count) {
+                    System.out.println("   → " + done + " / " + count + " produits chargés");
+                    lastReport = done;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (Connection conn = DBMigrate.getJdbcConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE products");
+        }
+        return loaded.get();
+    }
+
+    private void loadChunk(long from, long to) throws SQLException {
+        int rows = (int) (to - from);
+        try (Connection conn = DBMigrate.getJdbcConnection()) {
+            conn.setAutoCommit(false);
+            // Horodatages synthétiques conservés (trigger de la migration 012), pour cette transaction seulement
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET LOCAL productapp.keep_timestamps = 'on'");
+            }
+            long[] ids = reserveIds(conn, rows);
+
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+            CopyIn copyIn = copyManager.copyIn(COPY_SQL);
+            try {
+                StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 1024);
+                for (int i = 0; i < rows; i++) {
+                    appendCsv(buffer, ids[i], generator.generate(from + i));
+                    if (buffer.length() >= BUFFER_SIZE) {
+                        write(copyIn, buffer);
+                    }
+                }
+                write(copyIn, buffer);
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+            conn.commit();
+            loaded.addAndGet(rows);
+        }
+    }
+
+    /**
+     * Réserve {@code rows} IDs dans products_id_seq : chaque valeur v de nextval couvre le bloc
+     * ]v - increment, v] (même convention que l'optimiseur "pooled" d'Hibernate)
+     */
+    private static long[] reserveIds(Connection conn, int rows) throws SQLException {
+        long increment;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                 "SELECT increment_by FROM pg_sequences WHERE sequencename = 'products_id_seq'")) {
+            if (!rs.next()) {
+                throw new SQLException("Séquence products_id_seq introuvable (exécuter DBMigrate)");
+            }
+            increment = rs.getLong(1);
+        }
+
+        long[] ids = new long[rows];
+        int filled = 0;
+        while (filled < rows) {
+            long blocks = (rows - filled + increment - 1) / increment;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT nextval('products_id_seq') FROM generate_series(1, ?)")) {
+                stmt.setLong(1, blocks);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next() && filled < rows) {
+                        long high = rs.getLong(1);
+                        for (long id = Math.max(1, high - increment + 1); id <= high && filled < rows; id++) {
+                            ids[filled++] = id;
+                        }
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private static void appendCsv(StringBuilder buffer, long id, Product product) {
+        buffer.append(id).append(',');
+        appendQuoted(buffer, product.getName());
+        buffer.append(',');
+        appendQuoted(buffer, product.getDescription());
+        buffer.append(',').append(product.getPrice().toPlainString())
+              .append(',').append(product.getQuantity())
+              .append(',').append(TIMESTAMP_FORMAT.format(product.getCreatedAt()))
+              .append(',').append(TIMESTAMP_FORMAT.format(product.getUpdatedAt()))
+              .append(",0\n");
+    }
+
+    private static void appendQuoted(StringBuilder buffer, String value) {
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                buffer.append('"');
+            }
+            buffer.append(c);
+        }
+        buffer.append('"');
+    }
+}
@@ -0,0 +1,154 @@
+package com.reingenierie.admin;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.dao.ProductQuery;
+import com.reingenierie.util.EnvUtil;
+import com.reingenierie.util.HibernateUtil;
+import com.reingenierie.util.JsonUtil;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * QueryPlanCheck - Tâche admin one-off : vérifie que les filtres courants de GET /api/products
+ * ne provoquent pas de parcours séquentiel de la table products
+ *
+ * - chaque scénario est une vraie ProductQuery : le SQL expliqué est celui que génère ProductDAO (Criteria)
+ * - EXPLAIN (GENERIC_PLAN) : plan d'une requête préparée, valable quelles que soient les valeurs (PostgreSQL 16+)
+ * - à lancer après DBMigrate (index 007 à 010) sur une table de taille réaliste (DataSeed --count) :
+ *   sur quelques centaines de lignes, le parcours séquentiel est le bon choix du planificateur
+ *
+ * Codes de sortie : 0 (aucun Seq Scan), 1 (Seq Scan sur products, index 007 à 010 non appliqués ou erreur),
+ * 2 (table trop petite pour conclure)
+ *
+ * Usage:
+ *   java -cp app.jar com.reingenierie.admin.QueryPlanCheck
+ */
+public class QueryPlanCheck {
+
+    private static final int PAGE_SIZE = EnvUtil.getEnvAsInt("API_PAGE_SIZE_DEFAULT", 50);
+    // En dessous de ce nombre de lignes, un parcours séquentiel est légitime : le contrôle n'a pas de sens
+    private static final long MIN_ROWS = EnvUtil.getEnvAsInt("PLAN_CHECK_MIN_ROWS", 10000);
+    // Migrations DBMigrate des index composites (colonne, id) servant les scénarios
+    private static final List<String> INDEX_MIGRATIONS = List.of("007", "008", "009", "010");
+
+    /**
+     * Filtres courants (paramètres de la requête HTTP), première page et page suivante
+     */
+    private static final List<Scenario> SCENARIOS = List.of(
+        new Scenario("Prix entre 10 et 50 €, tri par prix", Map.of("minPrice", "10", "maxPrice", "50", "sort", "price"), null),
+        new Scenario("Prix entre 10 et 50 €, page suivante", Map.of("minPrice", "10", "maxPrice", "50", "sort", "price"), "25.00"),
+        new Scenario("Prix entre 10 et 50 €, tri par ID", Map.of("minPrice", "10", "maxPrice", "50"), null),
+        new Scenario("Produits les plus chers", Map.of("sort", "-price"), null),
+        new Scenario("Stock faible (quantité ≤ 5)", Map.of("maxQuantity", "5", "sort", "quantity"), null),
+        new Scenario("Créés depuis le 01/06/2025, plus récents d'abord", Map.of("createdAfter", "2025-06-01", "sort", "-createdAt"), null),
+        new Scenario("Modifiés en janvier 2025", Map.of("updatedAfter", "2025-01-01", "updatedBefore", "2025-02-01"), null),
+        new Scenario("Synchronisation ?changedSince=, page suivante", Map.of("updatedAfter", "2025-06-01", "sort", "updatedAt"),
+            "2025-06-02T08:00:00")
+    );
+
+    public static void main(String[] args) {
+        System.out.println("");
+        System.out.println("========================================");
+        System.out.println("🔍 QueryPlanCheck - Plans des filtres /api/products");
+        System.out.println("========================================");
+        System.out.println("");
+
+        int exitCode;
+        try {
+            ProductDAO productDAO = new ProductDAO();
+
+            // Statistiques à jour : le planificateur décide à partir de pg_class / pg_statistic
+            List<String> missingIndexes;
+            try (Connection conn = DBMigrate.getJdbcConnection(); Statement stmt = conn.createStatement()) {
+                missingIndexes = new ArrayList<>(DBMigrate.pendingMigrations(conn));
+                missingIndexes.retainAll(INDEX_MIGRATIONS);
+                stmt.execute("ANALYZE products");
+            }
+            long rows = productDAO.estimateCount();
+            System.out.println("📊 Lignes estimées dans products : " + rows);
+            System.out.println("");
+
+            if (!missingIndexes.isEmpty()) {
+                // Sans ces index, le Seq Scan est attendu : inutile d'expliquer les scénarios
+                System.out.println("❌ Migrations d'index non appliquées : " + String.join(", ", missingIndexes));
+                System.out.println("   → Appliquer les migrations : java -cp app.jar com.reingenierie.admin.DBMigrate");
+                exitCode = 1;
+            } else if (rows < MIN_ROWS) {
+                System.out.println("⚠️  Moins de " + MIN_ROWS + " lignes : un parcours séquentiel serait le bon plan");
+                System.out.println("   → Charger un jeu réaliste : DataSeed --count 1000000");
+                exitCode = 2;
+            } else {
+                exitCode = checkScenarios(productDAO) ? 0 : 1;
+            }
+        } catch (Exception e) {
+            System.err.println("❌ ERREUR lors de la vérification des plans : " + e.getMessage());
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        try {
+            HibernateUtil.shutdown();
+        } catch (Exception shutdownEx) {
+            // Ignorer les erreurs de shutdown
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Explique chaque scénario ; retourne false si au moins un plan lit products séquentiellement
+     */
+    private static boolean checkScenarios(ProductDAO productDAO) throws Exception {
+        ObjectMapper mapper = JsonUtil.createObjectMapper();
+        int failures = 0;
+        for (Scenario scenario : SCENARIOS) {
+            ProductQuery query = ProductQuery.parse(scenario.params::get);
+            if (scenario.afterValue != null) {
+                query = query.after(1000, scenario.afterValue);
+            }
+            JsonNode plan = mapper.readTree(productDAO.explainFiltered(query, PAGE_SIZE + 1)).get(0).get("Plan");
+
+            List<String> nodes = new ArrayList<>();
+            boolean seqScan = collectNodes(plan, nodes);
+            if (seqScan) {
+                failures++;
+            }
+            System.out.println((seqScan ? "❌ " : "✅ ") + scenario.description + "  [" + query + "]");
+            System.out.println("   → " + String.join(" → ", nodes));
+        }
+
+        System.out.println("");
+        System.out.println("========================================");
+        if (failures == 0) {
+            System.out.println("✅ Aucun parcours séquentiel (" + SCENARIOS.size() + " scénarios)");
+        } else {
+            System.out.println("❌ " + failures + " scénario(s) avec parcours séquentiel de products");
+            System.out.println("   → Vérifier les migrations 007 à 010 : java -cp app.jar com.reingenierie.admin.DBMigrate --status");
+        }
+        System.out.println("========================================");
+        return failures == 0;
+    }
+
+    /**
+     * Parcours en profondeur du plan JSON : nœuds visités ("Index Scan (idx_products_price_id)"...),
+     * retourne true si un nœud est un Seq Scan de products
+     */
+    private static boolean collectNodes(JsonNode node, List<String> nodes) {
+        String type = node.path("Node Type").asText();
+        String index = node.path("Index Name").asText(null);
+        nodes.add(index != null ? type + " (" + index + ")" : type);
+        boolean seqScan = "Seq Scan".equals(type) && "products".equals(node.path("Relation Name").asText());
+        for (JsonNode child : node.path("Plans")) {
+            seqScan |= collectNodes(child, nodes);
+        }
+        return seqScan;
+    }
+
+    private record Scenario(String description, Map<String, String> params, String afterValue) {
+    }
+}
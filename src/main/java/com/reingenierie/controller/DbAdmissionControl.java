@@ -0,0 +1,116 @@
+package com.reingenierie.controller;
+
+import com.reingenierie.metrics.HttpMetrics;
+import com.reingenierie.metrics.LatencyHistogram;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contrôle d'admission des requêtes qui accèdent à la base (DB_ADMISSION_CONTROL_ENABLED, actif par défaut)
+ *
+ * Indépendant du modèle de threads : avec le pool Jetty, jusqu'à 200 requêtes attendent le pool de connexions
+ * (jusqu'à DB_CONNECTION_TIMEOUT) en occupant chacune un thread ; avec des threads virtuels (HTTP_VIRTUAL_THREADS=true),
+ * plus rien ne borne le nombre de requêtes simultanées. Sans contrôle, une rafale s'empile devant le pool.
+ * - sémaphore équitable (FIFO) dimensionné sur le pool : une requête n'utilise qu'une connexion à la fois,
+ *   donc une requête admise obtient sa connexion sans attendre dans le pool
+ * - attente bornée par DB_QUEUE_WAIT_BUDGET_MS : au-delà, 503 + Retry-After
+ * - file d'attente bornée par DB_QUEUE_MAX_WAITERS : au-delà, 429 + Retry-After immédiat
+ * La latence de queue reste ainsi bornée par le budget au lieu de croître avec la rafale.
+ */
+public class DbAdmissionControl {
+
+    // Attente en file : de quelques µs (permis libre) jusqu'au budget
+    private static final double[] WAIT_BUCKETS = {
+        0.00001, 0.0001, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5, 5.0
+    };
+
+    private final boolean enabled;
+    private final int permits;
+    private final Semaphore semaphore;
+    private final long waitBudgetNanos;
+    private final int maxWaiters;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram(WAIT_BUCKETS);
+
+    public DbAdmissionControl(boolean enabled, int permits, long waitBudgetMs, int maxWaiters, int retryAfterSeconds) {
+        this.enabled = enabled;
+        this.permits = permits;
+        this.semaphore = new Semaphore(permits, true);
+        this.waitBudgetNanos = TimeUnit.MILLISECONDS.toNanos(waitBudgetMs);
+        this.maxWaiters = maxWaiters;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Enveloppe un handler qui accède à la base (handler inchangé si le contrôle est désactivé)
+     */
+    public Handler guard(Handler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return ctx -> {
+            long start = System.nanoTime();
+            if (waiting.incrementAndGet() > maxWaiters) {
+                waiting.decrementAndGet();
+                rejectedQueueFull.increment();
+                reject(ctx, 429, "Trop de requêtes en attente de la base, réessayer plus tard");
+                return;
+            }
+            boolean acquired;
+            try {
+                // tryAcquire avec délai : respecte l'ordre FIFO du sémaphore équitable
+                acquired = semaphore.tryAcquire(waitBudgetNanos, TimeUnit.NANOSECONDS);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            waitTime.record(System.nanoTime() - start);
+            if (!acquired) {
+                rejectedTimeout.increment();
+                reject(ctx, 503, "Base de données saturée, réessayer plus tard");
+                return;
+            }
+            try {
+                handler.handle(ctx);
+            } finally {
+                semaphore.release();
+            }
+        };
+    }
+
+    /**
+     * Expose la file d'admission dans /api/metrics
+     */
+    public void register(HttpMetrics metrics) {
+        if (!enabled) {
+            return;
+        }
+        metrics.registerGauge("db_admission_permits", "Requêtes admises simultanément vers la base", () -> permits);
+        metrics.registerGauge("db_admission_permits_available", "Permis d'accès à la base disponibles",
+            semaphore::availablePermits);
+        metrics.registerGauge("db_admission_waiting", "Requêtes en attente d'un permis", waiting::get);
+        metrics.registerCounter("db_admission_rejected_queue_full_total",
+            "Requêtes rejetées en 429 (file d'attente pleine)", rejectedQueueFull::sum);
+        metrics.registerCounter("db_admission_rejected_timeout_total",
+            "Requêtes rejetées en 503 (budget d'attente dépassé)", rejectedTimeout::sum);
+        metrics.registerHistogram("db_admission_wait_seconds", "Attente d'un permis d'accès à la base", waitTime);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void reject(Context ctx, int status, String message) {
+        ctx.header("Retry-After", String.valueOf(retryAfterSeconds))
+           .status(status)
+           .json(new ProductController.ErrorResponse(message));
+    }
+}
@@ -0,0 +1,251 @@
+package com.reingenierie.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.javalin.http.Context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache des réponses déjà encodées (GET /api/products, GET /api/products/{id})
+ *
+ * - chaque entrée contient la réponse sérialisée une seule fois par Jackson, dans le format négocié
+ *   (JSON, CBOR, Smile : voir ResponseFormat) et, au-delà de RESPONSE_CACHE_GZIP_MIN_BYTES, sa version gzip compressée une seule fois au niveau maximal
+ * - la variante envoyée dépend d'Accept-Encoding : une lecture servie depuis le cache est une copie de tampon,
+ *   sans sérialisation ni compression par requête (Content-Encoding posé : Javalin ne recompresse pas) ;
+ *   la variante gzip a son propre ETag fort (suffixe -gz, RFC 9110 : un validateur fort par codage)
+ * - une entrée n'est servie que pour l'ETag avec lequel elle a été construite (version du catalogue ou du produit),
+ *   et les écritures de ProductService évincent le produit concerné et toutes les listes
+ * - taille bornée en octets (RESPONSE_CACHE_MAX_MB), désactivable via RESPONSE_CACHE_ENABLED=false ;
+ *   une réponse de plus de RESPONSE_CACHE_MAX_MB / 16 n'est pas conservée, et ?all=true (tout le catalogue)
+ *   ne passe jamais par le cache
+ */
+public class EncodedResponseCache {
+
+    // Une entrée ne dépasse pas 1/8 de son cache : quelques grosses pages ne chassent pas toutes les autres
+    private static final int MAX_ENTRY_FRACTION = 8;
+
+    private final boolean enabled;
+    private final int gzipMinBytes;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Cache<ProductKey, EncodedResponse> products;
+    private final Cache<String, EncodedResponse> lists;
+
+    public EncodedResponseCache(boolean enabled, long maxBytes, int gzipMinBytes) {
+        this.enabled = enabled;
+        this.gzipMinBytes = gzipMinBytes;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 2 / MAX_ENTRY_FRACTION;
+        // Moitié du budget pour chaque cache : les listes ne chassent pas tous les produits
+        this.products = Caffeine.newBuilder()
+                .maximumWeight(maxBytes / 2)
+                .weigher((ProductKey key, EncodedResponse response) -> response.weight())
+                .recordStats()
+                .build();
+        this.lists = Caffeine.newBuilder()
+                .maximumWeight(maxBytes / 2)
+                .weigher((String key, EncodedResponse response) -> response.weight())
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Réponse d'un produit encodée pour cet ETag (null si absente ou construite pour un autre ETag)
+     */
+    public EncodedResponse getProduct(ResponseFormat format, Long id, String etag) {
+        return enabled ? matching(products.getIfPresent(new ProductKey(id, format)), etag) : null;
+    }
+
+    public EncodedResponse putProduct(ResponseFormat format, Long id, String etag, Object body) {
+        EncodedResponse response = encode(format, etag, body, enabled);
+        if (enabled && response.weight() <= maxEntryBytes) {
+            products.put(new ProductKey(id, format), response);
+        }
+        return response;
+    }
+
+    /**
+     * Réponse d'une liste (clé : paramètres normalisés de la requête) encodée pour cet ETag
+     */
+    public EncodedResponse getList(ResponseFormat format, String key, String etag) {
+        return enabled ? matching(lists.getIfPresent(format + ":" + key), etag) : null;
+    }
+
+    public EncodedResponse putList(ResponseFormat format, String key, String etag, Object body) {
+        EncodedResponse response = encode(format, etag, body, enabled);
+        if (enabled && response.weight() <= maxEntryBytes) {
+            lists.put(format + ":" + key, response);
+        }
+        return response;
+    }
+
+    /**
+     * Réponse encodée sans passer par le cache (ex. ?all=true : tout le catalogue, plus gros que le budget d'une entrée)
+     */
+    public EncodedResponse uncached(ResponseFormat format, String etag, Object body) {
+        return encode(format, etag, body, false);
+    }
+
+    /**
+     * Écriture d'un produit : son entrée et toutes les listes (qui peuvent le contenir) sont périmées.
+     * ID null : tout le catalogue a pu changer (resynchronisation du bus d'invalidation)
+     */
+    public void invalidate(Long id) {
+        if (id == null) {
+            invalidateAll();
+            return;
+        }
+        for (ResponseFormat format : ResponseFormat.values()) {
+            products.invalidate(new ProductKey(id, format));
+        }
+        lists.invalidateAll();
+    }
+
+    public void invalidateAll() {
+        products.invalidateAll();
+        lists.invalidateAll();
+    }
+
+    /**
+     * Envoie la variante adaptée à Accept-Encoding (gzip si accepté et au-delà de RESPONSE_CACHE_GZIP_MIN_BYTES).
+     * La variante gzip remplace l'ETag posé par l'appelant par son ETag propre (gzipETag).
+     */
+    public static void send(Context ctx, EncodedResponse response) {
+        ctx.contentType(response.contentType);
+        if (response.compressible && acceptsGzip(ctx.header("Accept-Encoding"))) {
+            ctx.header("Content-Encoding", "gzip");
+            ctx.header("ETag", gzipETag(response.etag));
+            ctx.result(response.gzip != null ? response.gzip : gzip(response.body, Deflater.DEFAULT_COMPRESSION));
+        } else {
+            ctx.result(response.body);
+        }
+    }
+
+    /**
+     * ETag fort de la variante gzip : octets différents de la représentation non compressée, donc validateur différent
+     */
+    public static String gzipETag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("maxBytes", maxBytes);
+        result.put("maxEntryBytes", maxEntryBytes);
+        result.put("gzipMinBytes", gzipMinBytes);
+        result.put("products", cacheStats(products));
+        result.put("lists", cacheStats(lists));
+        return result;
+    }
+
+    private static Map<String, Object> cacheStats(Cache<?, EncodedResponse> cache) {
+        CacheStats stats = cache.stats();
+        long bytes = cache.asMap().values().stream().mapToLong(EncodedResponse::weight).sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("bytes", bytes);
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    private static EncodedResponse matching(EncodedResponse response, String etag) {
+        return response != null && response.etag.equals(etag) ? response : null;
+    }
+
+    private EncodedResponse encode(ResponseFormat format, String etag, Object body, boolean precompress) {
+        try {
+            byte[] encoded = format.mapper().writeValueAsBytes(body);
+            boolean compressible = encoded.length >= gzipMinBytes;
+            // Entrée du cache : compression faite une seule fois, au niveau maximal. Sinon gzip au niveau par défaut
+            // à l'envoi, si le client l'accepte (par send plutôt que Javalin, qui garderait le même ETag)
+            byte[] gzip = precompress && compressible ? gzip(encoded, Deflater.BEST_COMPRESSION) : null;
+            return new EncodedResponse(format.contentType(), etag, encoded, gzip, compressible);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Accept-Encoding accepte gzip : "gzip" sans q=0, ou à défaut "*" sans q=0
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                    accepted = false;
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip")) {
+                return accepted;
+            }
+            if (coding.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private record ProductKey(Long id, ResponseFormat format) {
+    }
+
+    /**
+     * Réponse encodée : octets bruts et variante gzip (null pour les petites réponses et celles hors cache)
+     */
+    public static final class EncodedResponse {
+        final String contentType;
+        final String etag;
+        final byte[] body;
+        final byte[] gzip;
+        // Assez grosse pour être envoyée en gzip (précompressée ou compressée à l'envoi)
+        final boolean compressible;
+
+        EncodedResponse(String contentType, String etag, byte[] body, byte[] gzip, boolean compressible) {
+            this.contentType = contentType;
+            this.etag = etag;
+            this.body = body;
+            this.gzip = gzip;
+            this.compressible = compressible;
+        }
+
+        int weight() {
+            return body.length + (gzip != null ? gzip.length : 0) + etag.length() + 64;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.reingenierie.controller;
+
+import com.reingenierie.service.ProductChangeFeed;
+import io.javalin.http.sse.SseClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flux des modifications du catalogue en Server-Sent Events : GET /api/products/changes
+ *
+ * - un thread virtuel par abonné lit le journal (ProductChangeFeed) depuis son curseur et écrit les événements :
+ *   nom created / updated / deleted / stock, id = séquence, données = ProductChange en JSON
+ * - à l'ouverture, un événement "subscribed" porte la séquence courante : EventSource la renvoie dans
+ *   Last-Event-ID à la reconnexion, même si aucune modification n'a été reçue entre-temps
+ * - reprise via Last-Event-ID : les événements manqués encore dans le tampon sont rejoués, sinon un événement
+ *   "reset" demande au client de recharger le catalogue avant de continuer
+ * - abonné trop lent (dépassé par le tampon pendant le flux) : déconnecté, il recevra "reset" en se reconnectant
+ * - commentaire keep-alive toutes les CHANGE_FEED_KEEPALIVE_MS (proxys, détection des clients partis)
+ */
+public class ProductChangeStream {
+
+    // Événements lus dans le journal par réveil de l'abonné
+    private static final int MAX_EVENTS_PER_READ = 256;
+
+    private final ProductChangeFeed feed;
+    private final long keepAliveMs;
+    private final int maxSubscribers;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    // Métriques
+    private final LongAdder sentEvents = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder droppedSubscribers = new LongAdder();
+    private final LongAdder rejectedSubscribers = new LongAdder();
+
+    public ProductChangeStream(ProductChangeFeed feed, long keepAliveMs, int maxSubscribers) {
+        this.feed = feed;
+        this.keepAliveMs = keepAliveMs;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * Handler SSE de Javalin : la connexion reste ouverte, les événements sont écrits par le thread de l'abonné
+     */
+    public void handle(SseClient client) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            rejectedSubscribers.increment();
+            client.sendEvent("overloaded", Map.of("error", "Trop d'abonnés au flux des modifications"));
+            client.close();
+            return;
+        }
+        Long lastEventId = parseSequence(client.ctx().header("Last-Event-ID"));
+        AtomicBoolean closed = new AtomicBoolean();
+        client.keepAlive();
+        Thread sender = Thread.ofVirtual().name("product-changes-sse").unstarted(() -> stream(client, lastEventId, closed));
+        client.onClose(() -> {
+            closed.set(true);
+            sender.interrupt();
+        });
+        sender.start();
+    }
+
+    private void stream(SseClient client, Long lastEventId, AtomicBoolean closed) {
+        try {
+            long cursor;
+            if (lastEventId != null) {
+                cursor = lastEventId;
+            } else {
+                cursor = feed.lastSequence();
+                client.sendEvent("subscribed", position(cursor), Long.toString(cursor));
+            }
+            boolean resuming = lastEventId != null;
+            while (!closed.get()) {
+                ProductChangeFeed.Batch batch = feed.readAfter(cursor, MAX_EVENTS_PER_READ, keepAliveMs);
+                if (batch.missed && !resuming) {
+                    // Dépassé par le tampon : ne rien accumuler pour lui, il se reconnectera avec son Last-Event-ID
+                    droppedSubscribers.increment();
+                    break;
+                }
+                if (batch.missed) {
+                    resets.increment();
+                    cursor = batch.lastSequence;
+                    client.sendEvent("reset", position(cursor), Long.toString(cursor));
+                } else if (batch.changes.isEmpty()) {
+                    client.sendComment("keep-alive");
+                } else {
+                    for (ProductChangeFeed.ProductChange change : batch.changes) {
+                        client.sendEvent(change.type, change, Long.toString(change.sequence));
+                    }
+                    sentEvents.add(batch.changes.size());
+                    cursor = batch.lastSequence;
+                }
+                resuming = false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("Flux des modifications interrompu: " + e.getMessage());
+        } finally {
+            subscribers.decrementAndGet();
+            client.close();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    public long sentEventCount() {
+        return sentEvents.sum();
+    }
+
+    public long droppedSubscriberCount() {
+        return droppedSubscribers.sum();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("subscribers", subscribers.get());
+        result.put("maxSubscribers", maxSubscribers);
+        result.put("capacity", feed.capacity());
+        result.put("lastSequence", feed.lastSequence());
+        result.put("sentEvents", sentEvents.sum());
+        result.put("resets", resets.sum());
+        result.put("droppedSubscribers", droppedSubscribers.sum());
+        result.put("rejectedSubscribers", rejectedSubscribers.sum());
+        return result;
+    }
+
+    private Map<String, Object> position(long sequence) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("sequence", sequence);
+        data.put("capacity", feed.capacity());
+        return data;
+    }
+
+    private static Long parseSequence(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // Identifiant inconnu : traité comme un curseur perdu (reset)
+            return -1L;
+        }
+    }
+}
@@ -1,39 +1,304 @@
 package com.reingenierie.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.reingenierie.dao.BatchValidationException;
+import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.dao.ProductFields;
+import com.reingenierie.dao.ProductQuery;
 import com.reingenierie.model.Product;
 import com.reingenierie.service.ProductService;
+import com.reingenierie.util.EnvUtil;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
+import jakarta.persistence.OptimisticLockException;
+import org.eclipse.jetty.server.Request;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ProductController {
     
+    // Pagination : taille de page par défaut et plafond (configurables par variables d'environnement)
+    private static final int DEFAULT_PAGE_SIZE = EnvUtil.getEnvAsInt("API_PAGE_SIZE_DEFAULT", 50);
+    private static final int MAX_PAGE_SIZE = EnvUtil.getEnvAsInt("API_PAGE_SIZE_MAX", 500);
+    private static final String CURSOR_PREFIX = "id:";
+    // Curseur d'une liste triée sur un autre champ : "k:<tri>:<dernier id>:<dernière valeur du champ de tri>"
+    private static final String KEYSET_CURSOR_PREFIX = "k:";
+    // Curseur de synchronisation différentielle : "s|<début de la synchronisation>|<dernier horodatage>|<dernier id>"
+    private static final String SYNC_CURSOR_PREFIX = "s|";
+    // Export en streaming : flush toutes les N lignes pour que le client reçoive les données au fil de l'eau
+    private static final int EXPORT_FLUSH_EVERY = 100;
+    // Réponses revalidées à chaque usage par le navigateur / nginx (If-None-Match → 304 sans corps)
+    private static final String CACHE_CONTROL = "no-cache";
+    // La version du catalogue compte les écritures de ce pod et celles reçues par le bus d'invalidation : si le bus
+    // est coupé ou désactivé, l'ETag des listes change au moins toutes les N secondes pour borner la durée d'un
+    // 304 périmé (0 : pas de limite)
+    private static final int LIST_ETAG_MAX_STALENESS_SECONDS = EnvUtil.getEnvAsInt("HTTP_LIST_ETAG_MAX_STALENESS_SECONDS", 5);
+    // Identifiant du processus : un ETag émis par une autre réplique ou avant un redémarrage ne correspond jamais
+    private static final String INSTANCE_TAG = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    
     private final ProductService productService;
+    private final EncodedResponseCache responseCache;
+    private final LongAdder abortedExports = new LongAdder();
     
-    public ProductController() {
-        this.productService = new ProductService();
+    public ProductController(ProductService productService, EncodedResponseCache responseCache) {
+        this.productService = productService;
+        this.responseCache = responseCache;
     }
     
+    /**
+     * Liste paginée par curseur : GET /api/products?limit=50&after=<cursor>
+     * La liste complète (non bornée) reste disponible explicitement via ?all=true
+     * Filtres et tri optionnels : ?minPrice=10&maxPrice=20&maxQuantity=5&sort=-price (voir ProductQuery)
+     * Format selon Accept : JSON par défaut, CBOR ou Smile (voir ResponseFormat)
+     * Projection optionnelle : ?fields=name,price (voir ProductFields)
+     * Synchronisation différentielle : ?changedSince=<watermark> (voir changesSince)
+     */
     public void getAllProducts(Context ctx) {
         try {
-            List<Product> products = productService.getAllProducts();
-            ctx.json(products).status(HttpStatus.OK);
+            ResponseFormat format = negotiate(ctx);
+            if (format == null) {
+                return;
+            }
+            LocalDateTime changedSince = ProductQuery.parseChangedSince(ctx::queryParam);
+            if (changedSince != null) {
+                changesSince(ctx, format, changedSince);
+                return;
+            }
+            // Version lue AVANT la requête : une écriture concurrente change l'ETag suivant, jamais l'inverse
+            String etag = format.etag(catalogETag());
+            if (notModified(ctx, etag)) {
+                return;
+            }
+            
+            boolean all = "true".equalsIgnoreCase(ctx.queryParam("all"));
+            int limit = all ? 0 : parseLimit(ctx.queryParam("limit"));
+            ProductFields fields = ProductFields.parse(ctx.queryParam("fields"));
+            ProductQuery query = ProductQuery.parse(ctx::queryParam);
+            String after = ctx.queryParam("after");
+            long afterId = 0;
+            if (!all && query != null) {
+                query = afterCursor(query, after);
+            } else if (!all) {
+                afterId = decodeCursor(after);
+            }
+            
+            EncodedResponseCache.EncodedResponse response;
+            if (all) {
+                // Tout le catalogue : jamais conservé dans le cache de réponses (taille non bornée)
+                response = responseCache.uncached(format, etag, allProducts(query, fields));
+            } else {
+                // Réponse déjà encodée pour cette version du catalogue : ni requête SQL, ni Jackson, ni gzip
+                String position = (query != null ? Objects.toString(after, "").trim() : Long.toString(afterId)) + ":" + limit;
+                String key = position + (query != null ? "?" + query : "") + (fields != null ? "|" + fields : "");
+                response = responseCache.getList(format, key, etag);
+                if (response == null) {
+                    response = responseCache.putList(format, key, etag, productsPage(query, afterId, limit, fields));
+                }
+            }
+            cacheable(ctx, etag);
+            EncodedResponseCache.send(ctx, response);
+            ctx.status(HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            ctx.json(new ErrorResponse(e.getMessage()))
+               .status(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             ctx.json(new ErrorResponse("Erreur lors de la récupération des produits: " + e.getMessage()))
                .status(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    /**
+     * Synchronisation différentielle : GET /api/products?changedSince=2024-01-31T12:00:00&limit=500&after=<cursor>
+     * Produits créés ou modifiés et IDs supprimés depuis le watermark, paginés par curseur ; la dernière page
+     * porte le watermark à passer à la synchronisation suivante. Le volume suit les modifications, pas la taille
+     * du catalogue. Ni ETag ni cache de réponses : chaque watermark est propre à un client.
+     * 503 tant que des produits n'ont pas d'updated_at (migration 011 non appliquée).
+     */
+    private void changesSince(Context ctx, ResponseFormat format, LocalDateTime since) throws IOException {
+        if ("true".equalsIgnoreCase(ctx.queryParam("all")) || ctx.queryParam("fields") != null
+                || ProductQuery.parse(ctx::queryParam) != null) {
+            throw new IllegalArgumentException("'changedSince' ne se combine pas avec all, fields, les filtres ou le tri");
+        }
+        if (!productService.isChangeSyncReady()) {
+            // Pas de réponse incomplète : le client garde son watermark et réessaiera
+            ctx.json(new ErrorResponse("Synchronisation différentielle indisponible : migration 011 non appliquée"))
+               .status(HttpStatus.SERVICE_UNAVAILABLE);
+            return;
+        }
+        int limit = parseLimit(ctx.queryParam("limit"));
+        SyncCursor cursor = decodeSyncCursor(ctx.queryParam("after"));
+        // Lu avant la première page : une écriture horodatée avant la lecture mais validée après est relue
+        // à la synchronisation suivante au lieu d'être perdue
+        LocalDateTime syncStart = cursor != null ? cursor.syncStart() : productService.getChangeSyncStart();
+
+        ProductService.ChangesPage page = cursor != null
+            ? productService.getChangesSince(since, cursor.lastTimestamp(), cursor.lastId(), limit)
+            : productService.getChangesSince(since, null, null, limit);
+
+        ChangesResponse body = new ChangesResponse();
+        body.changed = page.changed;
+        body.deleted = new ArrayList<>(page.deleted.size());
+        page.deleted.forEach(tombstone -> body.deleted.add(tombstone.getProductId()));
+        body.limit = limit;
+        if (page.lastId != null) {
+            body.nextCursor = encodeSyncCursor(syncStart, page.lastTimestamp, page.lastId);
+        } else {
+            body.watermark = (syncStart.isAfter(since) ? syncStart : since).toString();
+        }
+        ctx.header("Cache-Control", "no-store");
+        writeBody(ctx, format, body);
+        ctx.status(HttpStatus.OK);
+    }
+    
+    private List<?> allProducts(ProductQuery query, ProductFields fields) {
+        if (query == null) {
+            return fields == null ? productService.getAllProducts() : productService.getAllProducts(fields);
+        }
+        return fields == null ? productService.getAllProducts(query) : productService.getAllProducts(query, fields);
+    }
+    
+    private PageResponse productsPage(ProductQuery query, long afterId, int limit, ProductFields fields) {
+        ProductService.ProductPage<?> page;
+        if (query == null) {
+            page = fields == null
+                ? productService.getProductsPage(afterId, limit)
+                : productService.getProductsPage(afterId, limit, fields);
+        } else {
+            page = fields == null
+                ? productService.getProductsPage(query, limit)
+                : productService.getProductsPage(query, limit, fields);
+        }
+        String nextCursor = null;
+        if (page.lastId != null) {
+            nextCursor = query == null || query.isSortedById()
+                ? encodeCursor(page.lastId)
+                : encodeCursor(query, page.lastId, page.lastSortValue);
+        }
+        return new PageResponse(page.items, nextCursor, limit);
+    }
+    
+    /**
+     * Export complet en streaming : GET /api/products/export
+     * Les produits sont lus via un curseur JDBC et écrits un par un dans la réponse
+     * (transfert chunked, pas de Content-Length) : la mémoire reste constante et le
+     * premier octet part avant la fin de la requête SQL.
+     * La réponse n'est engagée (statut 200, '[') qu'à la première ligne lue : un échec à l'ouverture
+     * du curseur répond encore 500. Un échec en cours de flux coupe la connexion (abortExport).
+     */
+    public void exportProducts(Context ctx) {
+        ResponseFormat format = negotiate(ctx);
+        if (format == null) {
+            return;
+        }
+        JsonGenerator[] generator = {null};
+        long[] written = {0};
+        try {
+            productService.streamAllProducts(product -> {
+                try {
+                    if (generator[0] == null) {
+                        generator[0] = startExport(ctx, format);
+                    }
+                    generator[0].writeObject(product);
+                    // Première ligne envoyée tout de suite, puis par paquets
+                    if (++written[0] == 1 || written[0] % EXPORT_FLUSH_EVERY == 0) {
+                        generator[0].flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (generator[0] == null) {
+                generator[0] = startExport(ctx, format);
+            }
+            generator[0].writeEndArray();
+            generator[0].close();
+        } catch (Exception e) {
+            if (generator[0] == null) {
+                ctx.json(new ErrorResponse("Erreur lors de l'export des produits: " + e.getMessage()))
+                   .status(HttpStatus.INTERNAL_SERVER_ERROR);
+                return;
+            }
+            abortedExports.increment();
+            System.err.println("Export des produits interrompu après " + written[0] + " produit(s): " + e.getMessage());
+            abortExport(ctx, e);
+        }
+    }
+    
+    private static JsonGenerator startExport(Context ctx, ResponseFormat format) throws IOException {
+        ctx.status(HttpStatus.OK).contentType(format.contentType());
+        JsonGenerator generator = format.mapper().createGenerator(ctx.outputStream());
+        // Jamais de ']' implicite : un export interrompu ne doit pas ressembler à un tableau complet
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.writeStartArray();
+        return generator;
+    }
+    
+    /**
+     * Export interrompu alors que le statut 200 est parti : la connexion est coupée sans le chunk final,
+     * le client voit une erreur de transfert et non une fin de flux normale (tableau JSON tronqué).
+     */
+    private static void abortExport(Context ctx, Exception cause) {
+        Request request = Request.getBaseRequest(ctx.req());
+        if (request != null) {
+            request.getHttpChannel().abort(cause);
+        }
+    }
+    
+    /**
+     * Exports coupés en cours de flux (échec de la base ou de l'écriture après l'envoi des premières lignes)
+     */
+    public long abortedExportCount() {
+        return abortedExports.sum();
+    }
+    
     public void getProductById(Context ctx) {
         try {
             Long id = Long.parseLong(ctx.pathParam("id"));
+            ResponseFormat format = negotiate(ctx);
+            if (format == null) {
+                return;
+            }
+            ProductFields fields = ProductFields.parse(ctx.queryParam("fields"));
+            if (fields != null) {
+                Optional<Map<String, Object>> row = productService.getProductById(id, fields);
+                if (row.isPresent()) {
+                    writeBody(ctx, format, row.get());
+                    ctx.status(HttpStatus.OK);
+                } else {
+                    ctx.json(new ErrorResponse("Produit non trouvé"))
+                       .status(HttpStatus.NOT_FOUND);
+                }
+                return;
+            }
             Optional<Product> product = productService.getProductById(id);
             
             if (product.isPresent()) {
-                ctx.json(product.get()).status(HttpStatus.OK);
+                // Produit lu via le cache : un 304 ne touche ni la base ni Jackson
+                String etag = format.etag(productETag(product.get()));
+                if (notModified(ctx, etag)) {
+                    return;
+                }
+                EncodedResponseCache.EncodedResponse response = responseCache.getProduct(format, id, etag);
+                if (response == null) {
+                    response = responseCache.putProduct(format, id, etag, product.get());
+                }
+                cacheable(ctx, etag);
+                EncodedResponseCache.send(ctx, response);
+                ctx.status(HttpStatus.OK);
             } else {
                 ctx.json(new ErrorResponse("Produit non trouvé"))
                    .status(HttpStatus.NOT_FOUND);
@@ -41,6 +306,9 @@ public class ProductController {
         } catch (NumberFormatException e) {
             ctx.json(new ErrorResponse("ID invalide"))
                .status(HttpStatus.BAD_REQUEST);
+        } catch (IllegalArgumentException e) {
+            ctx.json(new ErrorResponse(e.getMessage()))
+               .status(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             ctx.json(new ErrorResponse("Erreur: " + e.getMessage()))
                .status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -68,6 +336,69 @@ public class ProductController {
         }
     }
     
+    /**
+     * Opérations en lot : POST /api/products/batch
+     * Corps : [{"op": "create|update|delete", "id": 1, "name": "...", "price": "9.99", "quantity": 3}, ...]
+     * Toutes les opérations sont exécutées dans une seule transaction (tout ou rien).
+     */
+    public void batchProducts(Context ctx) {
+        try {
+            BatchOperationRequest[] requests = ctx.bodyAsClass(BatchOperationRequest[].class);
+            List<ProductDAO.BatchOperation> operations = new ArrayList<>(requests.length);
+            for (int i = 0; i < requests.length; i++) {
+                operations.add(toBatchOperation(requests[i], i));
+            }
+            
+            List<Product> results = productService.executeBatch(operations);
+            
+            BatchResponse response = new BatchResponse();
+            for (int i = 0; i < operations.size(); i++) {
+                ProductDAO.BatchOperation operation = operations.get(i);
+                Long id = results.get(i) != null ? results.get(i).getId() : operation.id;
+                response.results.add(new BatchItemResult(i, operation.type.name().toLowerCase(Locale.ROOT), id));
+                switch (operation.type) {
+                    case CREATE -> response.created++;
+                    case UPDATE -> response.updated++;
+                    case DELETE -> response.deleted++;
+                }
+            }
+            ctx.json(response).status(HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            ctx.json(new ErrorResponse(e.getMessage()))
+               .status(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            ctx.json(new ErrorResponse("Erreur lors du batch: " + e.getMessage()))
+               .status(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    private static ProductDAO.BatchOperation toBatchOperation(BatchOperationRequest request, int index) {
+        if (request == null || request.op == null) {
+            throw new BatchValidationException(index, "champ 'op' requis");
+        }
+        ProductDAO.BatchOperation.Type type;
+        try {
+            type = ProductDAO.BatchOperation.Type.valueOf(request.op.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BatchValidationException(index, "op inconnue '" + request.op + "'");
+        }
+        if (type == ProductDAO.BatchOperation.Type.DELETE) {
+            return new ProductDAO.BatchOperation(type, request.id, null);
+        }
+        if (request.name == null && request.description == null && request.price == null && request.quantity == null) {
+            throw new BatchValidationException(index, "champs du produit requis pour '"
+                + type.name().toLowerCase(Locale.ROOT) + "'");
+        }
+        BigDecimal price;
+        try {
+            price = request.price != null ? new BigDecimal(request.price) : null;
+        } catch (NumberFormatException e) {
+            throw new BatchValidationException(index, "prix invalide");
+        }
+        Product product = new Product(request.name, request.description, price, request.quantity);
+        return new ProductDAO.BatchOperation(type, request.id, product);
+    }
+    
     public void updateProduct(Context ctx) {
         try {
             Long id = Long.parseLong(ctx.pathParam("id"));
@@ -78,10 +409,14 @@ public class ProductController {
                 request.name,
                 request.description,
                 new BigDecimal(request.price),
-                request.quantity
+                request.quantity,
+                request.version
             );
             
             ctx.json(product).status(HttpStatus.OK);
+        } catch (OptimisticLockException e) {
+            ctx.json(new ErrorResponse(e.getMessage()))
+               .status(HttpStatus.CONFLICT);
         } catch (NumberFormatException e) {
             ctx.json(new ErrorResponse("ID invalide"))
                .status(HttpStatus.BAD_REQUEST);
@@ -111,6 +446,10 @@ public class ProductController {
     
     public void searchProducts(Context ctx) {
         try {
+            ResponseFormat format = negotiate(ctx);
+            if (format == null) {
+                return;
+            }
             String name = ctx.queryParam("name");
             if (name == null || name.trim().isEmpty()) {
                 ctx.json(new ErrorResponse("Le paramètre 'name' est requis"))
@@ -118,8 +457,22 @@ public class ProductController {
                 return;
             }
             
-            List<Product> products = productService.searchProductsByName(name);
-            ctx.json(products).status(HttpStatus.OK);
+            String limitParam = ctx.queryParam("limit");
+            ProductFields fields = ProductFields.parse(ctx.queryParam("fields"));
+            if (fields != null) {
+                writeBody(ctx, format, limitParam == null
+                    ? productService.searchProductsByName(name, fields)
+                    : productService.searchProductsByName(name, parseLimit(limitParam), fields));
+            } else {
+                List<Product> products = limitParam == null
+                    ? productService.searchProductsByName(name)
+                    : productService.searchProductsByName(name, parseLimit(limitParam));
+                writeBody(ctx, format, products);
+            }
+            ctx.status(HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            ctx.json(new ErrorResponse(e.getMessage()))
+               .status(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             ctx.json(new ErrorResponse("Erreur lors de la recherche: " + e.getMessage()))
                .status(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -153,20 +506,276 @@ public class ProductController {
     
     public void getStats(Context ctx) {
         try {
-            long count = productService.getProductCount();
-            ctx.json(new StatsResponse(count)).status(HttpStatus.OK);
+            String etag = "\"s" + INSTANCE_TAG + "-" + productService.getInventoryStatsRevision() + "\"";
+            if (notModified(ctx, etag)) {
+                return;
+            }
+            cacheable(ctx, etag);
+            ctx.json(productService.getInventoryStats()).status(HttpStatus.OK);
+        } catch (Exception e) {
+            ctx.json(new ErrorResponse("Erreur: " + e.getMessage()))
+               .status(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    public void getCacheStats(Context ctx) {
+        try {
+            ctx.json(Map.of(
+                "products", productService.getCacheStats(),
+                "hibernate", productService.getSecondLevelCacheStats(),
+                "responses", responseCache.stats()
+            )).status(HttpStatus.OK);
         } catch (Exception e) {
             ctx.json(new ErrorResponse("Erreur: " + e.getMessage()))
                .status(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    public void getStockWriteBehindStats(Context ctx) {
+        ctx.json(productService.getStockWriteBehindStats()).status(HttpStatus.OK);
+    }
+    
+    public void getConnectionPoolStats(Context ctx) {
+        ctx.json(productService.getConnectionPoolStats()).status(HttpStatus.OK);
+    }
+    
+    /**
+     * ETag fort des listes : processus + version du catalogue (+ fenêtre de temps, voir LIST_ETAG_MAX_STALENESS_SECONDS)
+     */
+    private String catalogETag() {
+        StringBuilder etag = new StringBuilder("\"c").append(INSTANCE_TAG).append('-').append(productService.getCatalogVersion());
+        if (LIST_ETAG_MAX_STALENESS_SECONDS > 0) {
+            etag.append('-').append(System.currentTimeMillis() / 1000 / LIST_ETAG_MAX_STALENESS_SECONDS);
+        }
+        return etag.append('"').toString();
+    }
+    
+    /**
+     * ETag fort d'un produit : version (incrémentée à chaque écriture, y compris de stock) et updatedAt
+     */
+    static String productETag(Product product) {
+        LocalDateTime updatedAt = product.getUpdatedAt();
+        String updated = updatedAt == null ? "0"
+            : Long.toString(updatedAt.toEpochSecond(ZoneOffset.UTC), 36) + "." + Integer.toString(updatedAt.getNano(), 36);
+        return "\"p" + product.getId() + "-" + product.getVersion() + "-" + updated + "\"";
+    }
+    
+    /**
+     * Requête conditionnelle : si If-None-Match contient l'ETag courant (variante identité ou gzip),
+     * répond 304 (sans corps, avec l'ETag de la variante présentée) et retourne true
+     */
+    private static boolean notModified(Context ctx, String etag) {
+        String matched = matchingETag(ctx.header("If-None-Match"), etag);
+        if (matched == null) {
+            return false;
+        }
+        cacheable(ctx, matched);
+        ctx.status(HttpStatus.NOT_MODIFIED);
+        return true;
+    }
+    
+    private static void cacheable(Context ctx, String etag) {
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", CACHE_CONTROL);
+    }
+    
+    /**
+     * Corps de réponse sérialisé dans le format négocié (JSON via le mapper de Javalin)
+     */
+    private static void writeBody(Context ctx, ResponseFormat format, Object body) throws IOException {
+        if (format == ResponseFormat.JSON) {
+            ctx.json(body);
+        } else {
+            ctx.contentType(format.contentType()).result(format.mapper().writeValueAsBytes(body));
+        }
+    }
+    
+    /**
+     * Format de réponse négocié sur Accept ; répond 406 et retourne null si aucun format n'est acceptable
+     */
+    private static ResponseFormat negotiate(Context ctx) {
+        ctx.header("Vary", "Accept, Accept-Encoding");
+        ResponseFormat format = ResponseFormat.negotiate(ctx.header("Accept"));
+        if (format == null) {
+            ctx.json(new ErrorResponse("Format non disponible (Accept) : application/json, application/cbor "
+                + "ou application/x-jackson-smile"))
+               .status(HttpStatus.NOT_ACCEPTABLE);
+        }
+        return format;
+    }
+    
+    /**
+     * Comparaison faible d'If-None-Match (RFC 9110) : liste d'ETags ou "*".
+     * Le préfixe W/ est ignoré : nginx affaiblit les ETags des réponses qu'il compresse en gzip.
+     * L'ETag de la variante gzip (EncodedResponseCache.gzipETag) désigne la même version.
+     */
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        return matchingETag(ifNoneMatch, etag) != null;
+    }
+    
+    /**
+     * ETag de If-None-Match qui correspond à la version courante (etag ou sa variante gzip), null sinon
+     */
+    static String matchingETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return null;
+        }
+        String gzipEtag = EncodedResponseCache.gzipETag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return etag;
+            }
+            if (tag.equals(gzipEtag)) {
+                return gzipEtag;
+            }
+        }
+        return null;
+    }
+    
+    private static int parseLimit(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Paramètre 'limit' invalide");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Le paramètre 'limit' doit être positif");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+    
+    /**
+     * Curseur opaque : base64url de "id:<dernier id>"
+     */
+    static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Curseur opaque d'une liste triée : base64url de "k:<tri>:<dernier id>:<dernière valeur>"
+     */
+    static String encodeCursor(ProductQuery query, long lastId, Object lastSortValue) {
+        String cursor = KEYSET_CURSOR_PREFIX + query.sortKey() + ":" + lastId + ":" + query.formatSortValue(lastSortValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Reprise d'une liste filtrée après le curseur ; un curseur émis pour un autre tri est refusé
+     */
+    static ProductQuery afterCursor(ProductQuery query, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return query;
+        }
+        if (query.isSortedById()) {
+            return query.after(decodeCursor(cursor), null);
+        }
+        String[] parts;
+        long id;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            parts = decoded.split(":", 4);
+            if (parts.length != 4 || !(parts[0] + ":").equals(KEYSET_CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            id = Long.parseLong(parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        if (!parts[1].equals(query.sortKey())) {
+            throw new IllegalArgumentException("Curseur invalide pour le tri '" + query.sortKey() + "'");
+        }
+        return query.after(id, parts[3]);
+    }
+    
+    static String encodeSyncCursor(LocalDateTime syncStart, LocalDateTime lastTimestamp, long lastId) {
+        String cursor = SYNC_CURSOR_PREFIX + syncStart + "|" + lastTimestamp + "|" + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    static SyncCursor decodeSyncCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 4);
+            if (parts.length != 4 || !(parts[0] + "|").equals(SYNC_CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return new SyncCursor(LocalDateTime.parse(parts[1]), LocalDateTime.parse(parts[2]), Long.parseLong(parts[3]));
+        } catch (RuntimeException e) {
+            // Base64, nombre ou date invalides
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+    }
+    
+    record SyncCursor(LocalDateTime syncStart, LocalDateTime lastTimestamp, long lastId) {
+    }
+    
+    static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            if (!decoded.startsWith(CURSOR_PREFIX)) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            long id = Long.parseLong(decoded.substring(CURSOR_PREFIX.length()));
+            if (id < 0) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return id;
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException et erreurs base64 sont des IllegalArgumentException
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+    }
+    
     // DTOs
     public static class ProductRequest {
         public String name;
         public String description;
         public String price;
         public Integer quantity;
+        // Version attendue (optionnelle) : 409 si le produit a été modifié entre-temps
+        public Long version;
+    }
+    
+    public static class BatchOperationRequest {
+        public String op;
+        public Long id;
+        public String name;
+        public String description;
+        public String price;
+        public Integer quantity;
+    }
+    
+    public static class BatchItemResult {
+        public int index;
+        public String op;
+        public Long id;
+        public BatchItemResult(int index, String op, Long id) {
+            this.index = index;
+            this.op = op;
+            this.id = id;
+        }
+    }
+    
+    public static class BatchResponse {
+        public int created;
+        public int updated;
+        public int deleted;
+        public List<BatchItemResult> results = new ArrayList<>();
     }
     
     public static class StockUpdateRequest {
@@ -187,10 +796,27 @@ public class ProductController {
         }
     }
     
-    public static class StatsResponse {
-        public long totalProducts;
-        public StatsResponse(long totalProducts) {
-            this.totalProducts = totalProducts;
+    public static class ChangesResponse {
+        // Produits créés ou modifiés depuis le watermark (état courant)
+        public List<Product> changed;
+        // IDs des produits supprimés depuis le watermark
+        public List<Long> deleted;
+        // Page suivante (null sur la dernière page)
+        public String nextCursor;
+        // Sur la dernière page : valeur de changedSince pour la prochaine synchronisation
+        public String watermark;
+        public int limit;
+    }
+    
+    public static class PageResponse {
+        // Produits complets, ou projections (Map champ → valeur) avec ?fields=
+        public List<?> items;
+        public String nextCursor;
+        public int limit;
+        public PageResponse(List<?> items, String nextCursor, int limit) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.limit = limit;
         }
     }
 }
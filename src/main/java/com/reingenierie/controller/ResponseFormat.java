@@ -0,0 +1,95 @@
+package com.reingenierie.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.reingenierie.util.JsonUtil;
+
+import java.util.Locale;
+
+/**
+ * Formats de réponse des routes GET /api/products, choisis selon l'en-tête Accept
+ *
+ * - JSON : format par défaut (Accept absent ou joker), dates ISO-8601
+ * - CBOR (application/cbor) et Smile (application/x-jackson-smile) : encodages binaires pour les consommateurs
+ *   service-à-service ; prix BigDecimal et dates encodés en binaire, sans formatage ni analyse de texte
+ */
+public enum ResponseFormat {
+
+    JSON("application/json", "json", JsonUtil.createObjectMapper()),
+    CBOR("application/cbor", "cbor", JsonUtil.createObjectMapper(new CBORFactory())),
+    SMILE("application/x-jackson-smile", "smile", JsonUtil.createObjectMapper(new SmileFactory()));
+
+    private final String contentType;
+    private final String etagSuffix;
+    private final ObjectMapper mapper;
+
+    ResponseFormat(String contentType, String etagSuffix, ObjectMapper mapper) {
+        this.contentType = contentType;
+        this.etagSuffix = etagSuffix;
+        this.mapper = mapper;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * ETag de la représentation : chaque format a son propre ETag fort (octets différents)
+     */
+    public String etag(String baseEtag) {
+        if (this == JSON) {
+            return baseEtag;
+        }
+        return baseEtag.substring(0, baseEtag.length() - 1) + "-" + etagSuffix + "\"";
+    }
+
+    /**
+     * Format préféré du client d'après Accept (q le plus élevé, le premier cité en cas d'égalité).
+     * Retourne null si aucun type accepté n'est disponible (406).
+     */
+    public static ResponseFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        ResponseFormat best = null;
+        double bestQuality = 0;
+        for (String part : accept.split(",")) {
+            String[] tokens = part.split(";");
+            ResponseFormat format = forMediaRange(tokens[0].trim().toLowerCase(Locale.ROOT));
+            double quality = quality(tokens);
+            if (format != null && quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static ResponseFormat forMediaRange(String range) {
+        return switch (range) {
+            case "*/*", "application/*", "application/json" -> JSON;
+            case "application/cbor" -> CBOR;
+            case "application/x-jackson-smile", "application/smile" -> SMILE;
+            default -> null;
+        };
+    }
+
+    private static double quality(String[] tokens) {
+        for (int i = 1; i < tokens.length; i++) {
+            String param = tokens[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,14 @@
+package com.reingenierie.dao;
+
+/**
+ * Opération d'un batch refusée avant écriture ("Opération #n : ..."), à renvoyer au client (400)
+ *
+ * Distincte des autres IllegalArgumentException (Hibernate, JDBC) levées pendant l'exécution du batch,
+ * qui restent des erreurs serveur.
+ */
+public class BatchValidationException extends IllegalArgumentException {
+
+    public BatchValidationException(int index, String message) {
+        super("Opération #" + index + " : " + message);
+    }
+}
@@ -0,0 +1,144 @@
+package com.reingenierie.dao;
+
+import com.reingenierie.util.EnvUtil;
+import com.reingenierie.util.HibernateUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bus d'invalidation entre réplicas : NOTIFY product_changes émis dans la transaction de chaque écriture
+ *
+ * - charge utile : "<instance> <id>,<id>..." (découpée en plusieurs NOTIFY au-delà de la limite de 8000 octets),
+ *   ou "<instance> *" : tout le catalogue est périmé (écriture massive hors ProductDAO, ex. DataSeed)
+ * - émis dans la transaction : PostgreSQL ne délivre la notification qu'au COMMIT (rien après un rollback),
+ *   quand la ligne est déjà visible : un pod qui relit le produit à réception lit la nouvelle valeur
+ * - INSTANCE_ID identifie le processus émetteur : le listener ignore ses propres notifications
+ *   (les caches locaux ont déjà été mis à jour par l'écriture)
+ * - CACHE_INVALIDATION_BUS_ENABLED=false, ou une base autre que PostgreSQL : aucune notification
+ */
+public final class ProductChangeNotifications {
+
+    public static final String CHANNEL = "product_changes";
+    // Identifiant du processus, présent dans chaque notification émise
+    public static final String INSTANCE_ID = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
+    private static final boolean ENABLED = EnvUtil.getEnvAsBoolean("CACHE_INVALIDATION_BUS_ENABLED", true);
+    private static final String ALL = "*";
+    // Charge utile maximale d'un NOTIFY : 8000 octets (marge pour l'identifiant d'instance)
+    static final int MAX_PAYLOAD = 7900;
+
+    private ProductChangeNotifications() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED && HibernateUtil.isPostgreSQL();
+    }
+
+    /**
+     * Notifie la modification des produits {@code ids}, dans la transaction de {@code connection}
+     */
+    public static void send(Connection connection, Collection<Long> ids) throws SQLException {
+        if (!isEnabled() || ids.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (String payload : payloads(INSTANCE_ID, ids)) {
+                notify(stmt, payload);
+            }
+        }
+    }
+
+    /**
+     * Charges utiles "<instance> <id>,<id>..." des {@code ids} (non vide), découpées à MAX_PAYLOAD caractères
+     */
+    static List<String> payloads(String instanceId, Collection<Long> ids) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(instanceId).append(' ');
+        int header = payload.length();
+        for (Long id : ids) {
+            String value = id.toString();
+            if (payload.length() > header && payload.length() + value.length() + 1 > MAX_PAYLOAD) {
+                payloads.add(payload.toString());
+                payload.setLength(header);
+            }
+            if (payload.length() > header) {
+                payload.append(',');
+            }
+            payload.append(value);
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    /**
+     * Notifie que tout le catalogue est périmé (chargement ou suppression massive faits en SQL direct)
+     */
+    public static void sendAll(Connection connection) throws SQLException {
+        if (!isEnabled()) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            notify(stmt, INSTANCE_ID + " " + ALL);
+        }
+    }
+
+    private static void notify(PreparedStatement stmt, String payload) throws SQLException {
+        // pg_notify plutôt que NOTIFY : la charge utile est un paramètre lié
+        stmt.setString(1, CHANNEL);
+        stmt.setString(2, payload);
+        stmt.executeQuery().close();
+    }
+
+    /**
+     * Lit une charge utile reçue ; null si elle n'est pas au format attendu
+     */
+    public static Notification parse(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        int space = payload.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        String sender = payload.substring(0, space);
+        String body = payload.substring(space + 1);
+        if (ALL.equals(body)) {
+            return new Notification(sender, true, Collections.emptyList());
+        }
+        List<Long> ids = new ArrayList<>();
+        try {
+            for (String value : body.split(",")) {
+                ids.add(Long.valueOf(value));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new Notification(sender, false, ids);
+    }
+
+    /**
+     * Notification reçue : instance émettrice et produits modifiés (ou tout le catalogue si {@code all})
+     */
+    public static class Notification {
+        public final String sender;
+        public final boolean all;
+        public final List<Long> ids;
+
+        public Notification(String sender, boolean all, List<Long> ids) {
+            this.sender = sender;
+            this.all = all;
+            this.ids = ids;
+        }
+
+        public boolean isFrom(String instanceId) {
+            return sender.equals(instanceId);
+        }
+    }
+}
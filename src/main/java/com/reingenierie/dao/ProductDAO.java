@@ -1,20 +1,62 @@
 package com.reingenierie.dao;
 
 import com.reingenierie.model.Product;
+import com.reingenierie.model.ProductTombstone;
+import com.reingenierie.util.EnvUtil;
 import com.reingenierie.util.HibernateUtil;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jpa.HibernateHints;
 
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 public class ProductDAO {
 
+    // Nombre de lignes ramenées par aller-retour JDBC lors d'un export en streaming
+    private static final int STREAM_FETCH_SIZE = EnvUtil.getEnvAsInt("DB_STREAM_FETCH_SIZE", 500);
+    // Taille des lots d'une opération batch : flush + clear du contexte de persistance tous les N éléments
+    private static final int BATCH_CHUNK_SIZE = EnvUtil.getEnvAsInt("DB_JDBC_BATCH_SIZE", 50);
+    // Hors PostgreSQL : durée maximale d'une transaction d'écriture (ex. batch de 100 000 opérations), recul
+    // appliqué au watermark de la synchronisation différentielle
+    private static final long CHANGE_SYNC_MAX_TRANSACTION_MS = EnvUtil.getEnvAsInt("CHANGE_SYNC_MAX_TRANSACTION_MS", 60000);
+
     public Product create(Product product) {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             em.getTransaction().begin();
             em.persist(product);
+            notifyChanged(em, List.of(product.getId()));
             em.getTransaction().commit();
             return product;
         } catch (Exception e) {
@@ -37,56 +79,563 @@ public class ProductDAO {
         }
     }
 
+    /**
+     * Produits dont l'ID figure dans {@code ids}, en requêtes IN de DB_JDBC_BATCH_SIZE IDs
+     * (ordre quelconque ; les IDs absents sont ignorés)
+     */
+    public List<Product> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        List<Product> result = new ArrayList<>(idList.size());
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            for (int start = 0; start < idList.size(); start += BATCH_CHUNK_SIZE) {
+                result.addAll(em.createQuery("SELECT p FROM Product p WHERE p.id IN :ids", Product.class)
+                    .setParameter("ids", idList.subList(start, Math.min(start + BATCH_CHUNK_SIZE, idList.size())))
+                    .getResultList());
+            }
+            return result;
+        } finally {
+            em.close();
+        }
+    }
+
     public List<Product> findAll() {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             TypedQuery<Product> query = em.createQuery("SELECT p FROM Product p", Product.class);
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
             return query.getResultList();
         } finally {
             em.close();
         }
     }
 
-    public List<Product> findByName(String name) {
+    /**
+     * Pagination par curseur (keyset) : lit au plus {@code limit} produits dont l'ID
+     * est strictement supérieur à {@code afterId}, triés par ID.
+     * S'appuie sur l'index de la clé primaire (pas d'OFFSET, coût constant par page).
+     */
+    public List<Product> findPage(long afterId, int limit) {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             TypedQuery<Product> query = em.createQuery(
-                "SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(:name)", 
+                "SELECT p FROM Product p WHERE p.id > :after ORDER BY p.id",
                 Product.class
             );
-            query.setParameter("name", "%" + name + "%");
+            query.setParameter("after", afterId);
+            query.setMaxResults(limit);
             return query.getResultList();
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Parcourt tous les produits (triés par ID) via un curseur serveur, sans contexte de persistance.
+     * StatelessSession + ScrollableResults : la mémoire reste constante quelle que soit la taille de la table.
+     * PostgreSQL n'utilise le fetch size qu'à l'intérieur d'une transaction (autocommit désactivé).
+     * Retourne le nombre de produits lus.
+     */
+    public long streamAll(Consumer<Product> consumer) {
+        StatelessSession session = HibernateUtil.getSessionFactory().openStatelessSession();
+        Transaction tx = null;
+        long count = 0;
+        try {
+            tx = session.beginTransaction();
+            try (ScrollableResults<Product> results = session
+                    .createQuery("SELECT p FROM Product p ORDER BY p.id", Product.class)
+                    .setFetchSize(STREAM_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    consumer.accept(results.get());
+                    count++;
+                }
+            }
+            tx.commit();
+            return count;
+        } catch (RuntimeException e) {
+            if (tx != null && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Recherche par sous-chaîne sur le nom, triée par pertinence (similarité trigramme).
+     * Le prédicat {@code lower(name) LIKE '%x%'} est servi par l'index GIN
+     * idx_products_name_trgm (migration 004) au lieu d'un parcours séquentiel.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Product> findByName(String name, int limit) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            String term = name.toLowerCase(Locale.ROOT);
+            if (!HibernateUtil.isPostgreSQL()) {
+                // Autres bases (H2 pour les benchmarks) : pas de pg_trgm, tri par ID
+                TypedQuery<Product> query = em.createQuery(
+                    "SELECT p FROM Product p WHERE LOWER(p.name) LIKE :pattern ESCAPE '\\' ORDER BY p.id",
+                    Product.class
+                );
+                query.setParameter("pattern", "%" + escapeLike(term) + "%");
+                query.setMaxResults(limit);
+                return query.getResultList();
+            }
+            Query query = em.createNativeQuery(
+                "SELECT * FROM products WHERE lower(name) LIKE :pattern " +
+                "ORDER BY similarity(lower(name), :term) DESC, id " +
+                "LIMIT :limit",
+                Product.class
+            );
+            query.setParameter("pattern", "%" + escapeLike(term) + "%");
+            query.setParameter("term", term);
+            query.setParameter("limit", limit);
+            return query.getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Projection de tout le catalogue (?all=true&fields=...) : Tuples, aucune entité gérée
+     */
+    public List<Map<String, Object>> findAllFields(ProductFields fields) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            TypedQuery<Tuple> query = em.createQuery(
+                "SELECT " + fields.jpqlSelect("p") + " FROM Product p ORDER BY p.id", Tuple.class);
+            return toMaps(query.getResultList(), fields);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Page par curseur (voir findPage) limitée aux champs demandés
+     */
+    public List<Map<String, Object>> findPageFields(long afterId, int limit, ProductFields fields) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            TypedQuery<Tuple> query = em.createQuery(
+                "SELECT " + fields.jpqlSelect("p") + " FROM Product p WHERE p.id > :after ORDER BY p.id",
+                Tuple.class
+            );
+            query.setParameter("after", afterId);
+            query.setMaxResults(limit);
+            return toMaps(query.getResultList(), fields);
+        } finally {
+            em.close();
+        }
+    }
+
+    public Optional<Map<String, Object>> findFieldsById(Long id, ProductFields fields) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            List<Tuple> rows = em.createQuery(
+                "SELECT " + fields.jpqlSelect("p") + " FROM Product p WHERE p.id = :id", Tuple.class
+            ).setParameter("id", id).getResultList();
+            return rows.isEmpty() ? Optional.empty() : Optional.of(fields.toMap(rows.get(0)));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Recherche par nom (voir findByName) limitée aux champs demandés.
+     * Même prédicat LIKE (index trigramme) ; sur PostgreSQL, tri par similarity() appelée depuis JPQL.
+     */
+    public List<Map<String, Object>> findByNameFields(String name, int limit, ProductFields fields) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            String term = name.toLowerCase(Locale.ROOT);
+            boolean postgres = HibernateUtil.isPostgreSQL();
+            TypedQuery<Tuple> query = em.createQuery(
+                "SELECT " + fields.jpqlSelect("p") + " FROM Product p " +
+                "WHERE LOWER(p.name) LIKE :pattern ESCAPE '\\' " +
+                (postgres ? "ORDER BY function('similarity', LOWER(p.name), :term) DESC, p.id" : "ORDER BY p.id"),
+                Tuple.class
+            );
+            query.setParameter("pattern", "%" + escapeLike(term) + "%");
+            if (postgres) {
+                query.setParameter("term", term);
+            }
+            query.setMaxResults(limit);
+            return toMaps(query.getResultList(), fields);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Produits filtrés et triés (voir ProductQuery), au plus {@code limit} (0 : sans limite).
+     * Requête Criteria typée : les bornes sont des paramètres liés et l'ordre (champ de tri, id)
+     * suit les index composites des migrations 007 à 010 (parcours d'index, sans tri ni parcours séquentiel).
+     */
+    public List<Product> findFiltered(ProductQuery filter, int limit) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            return filteredQuery(em, filter, limit).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Produits filtrés et triés, limités aux champs demandés (Tuples, aucune entité gérée)
+     */
+    public List<Map<String, Object>> findFilteredFields(ProductQuery filter, int limit, ProductFields fields) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> query = cb.createTupleQuery();
+            Root<Product> product = query.from(Product.class);
+            query.multiselect(fields.selections(product));
+            applyFilter(cb, query, product, filter);
+            return toMaps(limited(em.createQuery(query), limit).getResultList(), fields);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Plan d'exécution (EXPLAIN, format JSON) du SQL généré par Hibernate pour ce filtre, PostgreSQL 16+ uniquement.
+     * La requête est exécutée une fois pour capturer son SQL, puis expliquée en plan générique (paramètres $1, $2...) :
+     * c'est le plan d'une requête préparée, indépendant des valeurs d'exemple.
+     */
+    public String explainFiltered(ProductQuery filter, int limit) {
+        if (!HibernateUtil.isPostgreSQL()) {
+            throw new IllegalStateException("EXPLAIN (GENERIC_PLAN) n'est disponible que sur PostgreSQL");
+        }
+        List<String> statements = new ArrayList<>();
+        try (Session session = HibernateUtil.getSessionFactory().withOptions()
+                .statementInspector(sql -> {
+                    statements.add(sql);
+                    return sql;
+                })
+                .openSession()) {
+            filteredQuery(session, filter, limit).getResultList();
+            String sql = statements.get(statements.size() - 1);
+            return session.doReturningWork(connection -> explainGeneric(connection, sql));
+        }
+    }
+
+    private static TypedQuery<Product> filteredQuery(EntityManager em, ProductQuery filter, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(product);
+        applyFilter(cb, query, product, filter);
+        return limited(em.createQuery(query), limit);
+    }
+
+    private static <T> TypedQuery<T> limited(TypedQuery<T> query, int limit) {
+        return limit > 0 ? query.setMaxResults(limit) : query;
+    }
+
+    /**
+     * Clause WHERE (bornes + curseur) et ORDER BY d'une ProductQuery
+     */
+    private static void applyFilter(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Product> product, ProductQuery filter) {
+        Path<Long> id = product.get("id");
+        Path<String> name = product.get("name");
+        Path<BigDecimal> price = product.get("price");
+        Path<Integer> quantity = product.get("quantity");
+        Path<LocalDateTime> createdAt = product.get("createdAt");
+        Path<LocalDateTime> updatedAt = product.get("updatedAt");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.minPrice != null) {
+            predicates.add(cb.greaterThanOrEqualTo(price, filter.minPrice));
+        }
+        if (filter.maxPrice != null) {
+            predicates.add(cb.lessThanOrEqualTo(price, filter.maxPrice));
+        }
+        if (filter.minQuantity != null) {
+            predicates.add(cb.greaterThanOrEqualTo(quantity, filter.minQuantity));
+        }
+        if (filter.maxQuantity != null) {
+            predicates.add(cb.lessThanOrEqualTo(quantity, filter.maxQuantity));
+        }
+        if (filter.createdAfter != null) {
+            predicates.add(cb.greaterThanOrEqualTo(createdAt, filter.createdAfter));
+        }
+        if (filter.createdBefore != null) {
+            predicates.add(cb.lessThan(createdAt, filter.createdBefore));
+        }
+        if (filter.updatedAfter != null) {
+            predicates.add(cb.greaterThanOrEqualTo(updatedAt, filter.updatedAfter));
+        }
+        if (filter.updatedBefore != null) {
+            predicates.add(cb.lessThan(updatedAt, filter.updatedBefore));
+        }
+        if (filter.afterId != null) {
+            predicates.add(switch (filter.sort) {
+                case ID -> filter.descending ? cb.lessThan(id, filter.afterId) : cb.greaterThan(id, filter.afterId);
+                case NAME -> after(cb, name, (String) filter.afterValue, id, filter.afterId, filter.descending);
+                case PRICE -> after(cb, price, (BigDecimal) filter.afterValue, id, filter.afterId, filter.descending);
+                case QUANTITY -> after(cb, quantity, (Integer) filter.afterValue, id, filter.afterId, filter.descending);
+                case CREATED_AT -> after(cb, createdAt, (LocalDateTime) filter.afterValue, id, filter.afterId, filter.descending);
+                case UPDATED_AT -> after(cb, updatedAt, (LocalDateTime) filter.afterValue, id, filter.afterId, filter.descending);
+            });
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+
+        // id en second critère, dans le même sens : l'index (colonne, id) est parcouru dans un sens ou dans l'autre
+        Path<?> key = product.get(filter.sort.attribute);
+        if (filter.sort == ProductQuery.Sort.ID) {
+            query.orderBy(filter.descending ? cb.desc(id) : cb.asc(id));
+        } else if (filter.descending) {
+            query.orderBy(cb.desc(key), cb.desc(id));
+        } else {
+            query.orderBy(cb.asc(key), cb.asc(id));
+        }
+    }
+
+    /**
+     * Condition de curseur (clé, id) > (valeur, afterId), ou < en ordre décroissant.
+     * Écrite "clé >= valeur AND (clé > valeur OR id > afterId)" : la première condition borne le parcours d'index.
+     */
+    private static <Y extends Comparable<? super Y>> Predicate after(CriteriaBuilder cb, Path<Y> key, Y value,
+                                                                   Path<Long> id, long afterId, boolean descending) {
+        if (descending) {
+            return cb.and(cb.lessThanOrEqualTo(key, value), cb.or(cb.lessThan(key, value), cb.lessThan(id, afterId)));
+        }
+        return cb.and(cb.greaterThanOrEqualTo(key, value), cb.or(cb.greaterThan(key, value), cb.greaterThan(id, afterId)));
+    }
+
+    /**
+     * EXPLAIN (GENERIC_PLAN) : les paramètres JDBC "?" deviennent $1, $2... (le SQL généré ne contient pas d'autre "?")
+     */
+    private static String explainGeneric(Connection connection, String sql) throws SQLException {
+        StringBuilder numbered = new StringBuilder(sql.length() + 16);
+        int parameter = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN (GENERIC_PLAN, FORMAT JSON) " + numbered)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static List<Map<String, Object>> toMaps(List<Tuple> tuples, ProductFields fields) {
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            rows.add(fields.toMap(tuple));
+        }
+        return rows;
+    }
+
+    /**
+     * Échappe les caractères spéciaux de LIKE (\, %, _) saisis par l'utilisateur
+     */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Fusionne un produit détaché. La colonne version est vérifiée par Hibernate :
+     * si le produit a été modifié entre-temps, une OptimisticLockException est levée.
+     */
     public Product update(Product product) {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             em.getTransaction().begin();
             Product updated = em.merge(product);
+            notifyChanged(em, List.of(updated.getId()));
             em.getTransaction().commit();
             return updated;
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
             }
+            OptimisticLockException conflict = findOptimisticLockException(e);
+            if (conflict != null) {
+                throw conflict;
+            }
             throw new RuntimeException("Erreur lors de la mise à jour du produit", e);
         } finally {
             em.close();
         }
     }
 
-    public void delete(Long id) {
+    /**
+     * Exécute une liste de créations / mises à jour / suppressions dans UNE transaction.
+     * Les opérations sont traitées par lots de DB_JDBC_BATCH_SIZE : les produits à modifier ou
+     * supprimer sont chargés en une requête IN, puis le lot est flushé (INSERT/UPDATE/DELETE en
+     * batch JDBC) et le contexte de persistance vidé, pour garder une mémoire bornée.
+     * Retourne le produit résultant de chaque opération (null pour une suppression).
+     * Si une opération échoue, toute la transaction est annulée.
+     */
+    public List<Product> executeBatch(List<BatchOperation> operations) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<Product> results = new ArrayList<>(operations.size());
+            List<Long> changedIds = new ArrayList<>(operations.size());
+            for (int start = 0; start < operations.size(); start += BATCH_CHUNK_SIZE) {
+                List<BatchOperation> chunk = operations.subList(start, Math.min(start + BATCH_CHUNK_SIZE, operations.size()));
+                Map<Long, Product> existing = loadExisting(em, chunk);
+                
+                for (int i = 0; i < chunk.size(); i++) {
+                    BatchOperation operation = chunk.get(i);
+                    int index = start + i;
+                    switch (operation.type) {
+                        case CREATE -> {
+                            em.persist(operation.product);
+                            results.add(operation.product);
+                            changedIds.add(operation.product.getId());
+                        }
+                        case UPDATE -> {
+                            Product product = requireExisting(existing, operation.id, index);
+                            operation.recordPrevious(product);
+                            product.setName(operation.product.getName());
+                            product.setDescription(operation.product.getDescription());
+                            product.setPrice(operation.product.getPrice());
+                            product.setQuantity(operation.product.getQuantity());
+                            results.add(product);
+                            changedIds.add(product.getId());
+                        }
+                        case DELETE -> {
+                            Product product = requireExisting(existing, operation.id, index);
+                            operation.recordPrevious(product);
+                            em.remove(product);
+                            em.persist(new ProductTombstone(product.getId(), LocalDateTime.now()));
+                            results.add(null);
+                            changedIds.add(product.getId());
+                        }
+                    }
+                }
+                em.flush();
+                em.clear();
+            }
+            notifyChanged(em, changedIds);
+            em.getTransaction().commit();
+            return results;
+        } catch (BatchValidationException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Erreur lors de l'exécution du batch", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * NOTIFY product_changes dans la transaction en cours (délivré aux autres réplicas au COMMIT)
+     */
+    private static void notifyChanged(EntityManager em, Collection<Long> ids) {
+        if (ProductChangeNotifications.isEnabled() && !ids.isEmpty()) {
+            em.unwrap(Session.class).doWork(connection -> ProductChangeNotifications.send(connection, ids));
+        }
+    }
+
+    private static Map<Long, Product> loadExisting(EntityManager em, List<BatchOperation> chunk) {
+        Set<Long> ids = new HashSet<>();
+        for (BatchOperation operation : chunk) {
+            if (operation.type != BatchOperation.Type.CREATE) {
+                ids.add(operation.id);
+            }
+        }
+        Map<Long, Product> existing = new HashMap<>();
+        if (!ids.isEmpty()) {
+            em.createQuery("SELECT p FROM Product p WHERE p.id IN :ids", Product.class)
+              .setParameter("ids", ids)
+              .getResultList()
+              .forEach(product -> existing.put(product.getId(), product));
+        }
+        return existing;
+    }
+
+    private static Product requireExisting(Map<Long, Product> existing, Long id, int index) {
+        Product product = existing.get(id);
+        if (product == null) {
+            throw new BatchValidationException(index, "produit non trouvé avec l'ID: " + id);
+        }
+        return product;
+    }
+
+    /**
+     * Ajustement atomique du stock en une seule requête (un aller-retour, pas de mise à jour perdue) :
+     * la condition {@code quantity + delta >= 0} est évaluée par PostgreSQL sous le verrou de ligne.
+     * Retourne le produit mis à jour, ou vide si le produit n'existe pas ou si le stock est insuffisant.
+     */
+    public Optional<Product> adjustQuantity(Long id, int delta) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            Product updated = em.unwrap(Session.class).doReturningWork(connection -> {
+                if (!HibernateUtil.isPostgreSQL()) {
+                    return adjustQuantityWithoutReturning(connection, id, delta);
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "UPDATE products SET quantity = quantity + ?, updated_at = ?, version = version + 1 " +
+                        "WHERE id = ? AND quantity + ? >= 0 " +
+                        "RETURNING id, name, description, price, quantity, created_at, updated_at, version")) {
+                    stmt.setInt(1, delta);
+                    stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                    stmt.setLong(3, id);
+                    stmt.setInt(4, delta);
+                    Product product;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        product = rs.next() ? mapRow(rs) : null;
+                    }
+                    if (product != null) {
+                        ProductChangeNotifications.send(connection, List.of(id));
+                    }
+                    return product;
+                }
+            });
+            em.getTransaction().commit();
+            if (updated != null) {
+                // Écriture faite hors Hibernate : retirer l'entrée périmée du cache de second niveau
+                HibernateUtil.evictFromSecondLevelCache(Product.class, id);
+            }
+            return Optional.ofNullable(updated);
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Erreur lors de la mise à jour du stock", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Supprime un produit et enregistre sa trace (ProductTombstone) dans la même transaction.
+     * Retourne le produit supprimé (vide s'il n'existait pas).
+     */
+    public Optional<Product> delete(Long id) {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             em.getTransaction().begin();
             Product product = em.find(Product.class, id);
             if (product != null) {
                 em.remove(product);
+                em.persist(new ProductTombstone(id, LocalDateTime.now()));
+                notifyChanged(em, List.of(id));
             }
             em.getTransaction().commit();
+            return Optional.ofNullable(product);
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
                 em.getTransaction().rollback();
@@ -97,10 +646,313 @@ public class ProductDAO {
         }
     }
 
+    /**
+     * Traces de suppression à partir de {@code since} (incluse), dans l'ordre (deleted_at, product_id),
+     * reprises après ({@code afterDeletedAt}, {@code afterId}) si non null. Index de la migration 011.
+     */
+    public List<ProductTombstone> findTombstonesSince(LocalDateTime since, LocalDateTime afterDeletedAt, Long afterId, int limit) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<ProductTombstone> query = cb.createQuery(ProductTombstone.class);
+            Root<ProductTombstone> tombstone = query.from(ProductTombstone.class);
+            Path<LocalDateTime> deletedAt = tombstone.get("deletedAt");
+            Path<Long> productId = tombstone.get("productId");
+
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.greaterThanOrEqualTo(deletedAt, since));
+            if (afterDeletedAt != null && afterId != null) {
+                predicates.add(after(cb, deletedAt, afterDeletedAt, productId, afterId, false));
+            }
+            query.select(tombstone)
+                 .where(predicates.toArray(new Predicate[0]))
+                 .orderBy(cb.asc(deletedAt), cb.asc(productId));
+            return limited(em.createQuery(query), limit).getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Variante sans RETURNING (bases autres que PostgreSQL) : UPDATE conditionnel puis relecture,
+     * dans la même transaction
+     */
+    private static Product adjustQuantityWithoutReturning(Connection connection, Long id, int delta) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "UPDATE products SET quantity = quantity + ?, updated_at = ?, version = version + 1 " +
+                "WHERE id = ? AND quantity + ? >= 0")) {
+            stmt.setInt(1, delta);
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(3, id);
+            stmt.setInt(4, delta);
+            if (stmt.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT id, name, description, price, quantity, created_at, updated_at, version FROM products WHERE id = ?")) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Applique des variations de stock cumulées : un UPDATE par produit, envoyés en un seul batch JDBC
+     * dans une seule transaction. Les IDs sont triés pour verrouiller les lignes dans un ordre stable
+     * (pas d'interblocage entre deux flushs concurrents).
+     */
+    public void applyQuantityDeltas(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> ordered = new TreeMap<>(deltas);
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(
+                        "UPDATE products SET quantity = quantity + ?, updated_at = ?, version = version + 1 WHERE id = ?")) {
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    for (Map.Entry<Long, Long> delta : ordered.entrySet()) {
+                        stmt.setLong(1, delta.getValue());
+                        stmt.setTimestamp(2, now);
+                        stmt.setLong(3, delta.getKey());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                ProductChangeNotifications.send(connection, ordered.keySet());
+            });
+            em.getTransaction().commit();
+            ordered.keySet().forEach(id -> HibernateUtil.evictFromSecondLevelCache(Product.class, id));
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Erreur lors de l'écriture des variations de stock", e);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static Product mapRow(ResultSet rs) throws SQLException {
+        Product product = new Product(
+            rs.getString("name"),
+            rs.getString("description"),
+            rs.getBigDecimal("price"),
+            rs.getInt("quantity")
+        );
+        product.setId(rs.getLong("id"));
+        product.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        product.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        product.setVersion(rs.getLong("version"));
+        return product;
+    }
+
+    private static OptimisticLockException findOptimisticLockException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException) {
+                return (OptimisticLockException) cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opération d'un batch : création (product), mise à jour (id + product) ou suppression (id)
+     */
+    public static class BatchOperation {
+        public enum Type { CREATE, UPDATE, DELETE }
+        
+        public final Type type;
+        public final Long id;
+        public final Product product;
+        // Prix et quantité avant l'opération (mise à jour / suppression), renseignés par executeBatch
+        public BigDecimal previousPrice;
+        public Integer previousQuantity;
+        
+        public BatchOperation(Type type, Long id, Product product) {
+            this.type = type;
+            this.id = id;
+            this.product = product;
+        }
+        
+        void recordPrevious(Product existing) {
+            this.previousPrice = existing.getPrice();
+            this.previousQuantity = existing.getQuantity();
+        }
+    }
+
+    /**
+     * Agrégats d'inventaire en une seule requête (un seul parcours de la table) :
+     * nombre de produits, unités en stock, valeur (prix × quantité), somme / min / max des prix,
+     * produits dont la quantité est inférieure à {@code lowStockThreshold}
+     */
+    public InventoryAggregate aggregateInventory(int lowStockThreshold) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            Object[] row = em.createQuery(
+                "SELECT COUNT(p), SUM(p.quantity), SUM(p.price * p.quantity), SUM(p.price), MIN(p.price), MAX(p.price), " +
+                "SUM(CASE WHEN p.quantity < :threshold THEN 1 ELSE 0 END) FROM Product p",
+                Object[].class
+            ).setParameter("threshold", lowStockThreshold).getSingleResult();
+            return InventoryAggregate.fromRow(row);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Mêmes agrégats calculés sur un échantillon de pages (TABLESAMPLE SYSTEM, PostgreSQL uniquement) :
+     * seules ~{@code samplePercent} % des pages de la table sont lues
+     */
+    public InventoryAggregate aggregateInventorySample(int lowStockThreshold, double samplePercent) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            Object[] row = (Object[]) em.createNativeQuery(
+                "SELECT COUNT(*), SUM(quantity), SUM(price * quantity), SUM(price), MIN(price), MAX(price), " +
+                "SUM(CASE WHEN quantity < :threshold THEN 1 ELSE 0 END) FROM products TABLESAMPLE SYSTEM (:percent)"
+            ).setParameter("threshold", lowStockThreshold)
+             .setParameter("percent", samplePercent)
+             .getSingleResult();
+            return InventoryAggregate.fromRow(row);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Au moins un produit sans updated_at (base antérieure à la migration 011, backfill non appliqué) :
+     * ces produits ne seraient jamais renvoyés par la synchronisation différentielle.
+     * Servi par l'index (updated_at, id) de la migration 010 (les NULL y sont indexés).
+     */
+    public boolean hasProductsWithoutUpdatedAt() {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            return !em.createQuery("SELECT p.id FROM Product p WHERE p.updatedAt IS NULL", Long.class)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Début d'une synchronisation différentielle : toute écriture non encore visible sera horodatée après.
+     *
+     * - PostgreSQL : début de la plus ancienne transaction en cours (pg_stat_activity, même rôle que l'application),
+     *   sur l'horloge de la base. updated_at / deleted_at valent le début de la transaction d'écriture (triggers
+     *   de la migration 012) : une transaction longue (batch) recule le watermark au lieu de perdre ses lignes.
+     *   Transactions de lecture comprises : une écriture ne s'identifie qu'à sa première ligne modifiée.
+     * - autres bases (H2, un seul processus) : horloge de la JVM moins CHANGE_SYNC_MAX_TRANSACTION_MS,
+     *   au mieux (une transaction plus longue peut perdre des lignes)
+     *
+     * À lire avant la requête de la première page, dans sa propre transaction.
+     */
+    public LocalDateTime changeSyncHorizon() {
+        if (!HibernateUtil.isPostgreSQL()) {
+            return LocalDateTime.now().minusNanos(CHANGE_SYNC_MAX_TRANSACTION_MS * 1_000_000);
+        }
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            Object horizon = em.createNativeQuery(
+                "SELECT LEAST(LOCALTIMESTAMP, MIN(xact_start)::timestamp) FROM pg_stat_activity " +
+                "WHERE datname = current_database() AND backend_type = 'client backend' AND xact_start IS NOT NULL"
+            ).getSingleResult();
+            return horizon instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) horizon;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Nombre de lignes estimé par le planificateur (pg_class.reltuples, mis à jour par VACUUM / ANALYZE) :
+     * lecture d'une seule ligne du catalogue, quelle que soit la taille de la table.
+     * Retourne -1 si la table n'a jamais été analysée (ou hors PostgreSQL).
+     */
+    public long estimateCount() {
+        if (!HibernateUtil.isPostgreSQL()) {
+            return -1;
+        }
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            Number estimate = (Number) em.createNativeQuery(
+                "SELECT reltuples FROM pg_class WHERE oid = 'products'::regclass"
+            ).getSingleResult();
+            return estimate.longValue() < 0 ? -1 : estimate.longValue();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Résultat d'une requête d'agrégats d'inventaire (prix min / max null si la table est vide)
+     */
+    public static class InventoryAggregate {
+        public static final InventoryAggregate EMPTY =
+            new InventoryAggregate(0, 0, BigDecimal.ZERO, BigDecimal.ZERO, null, null, 0);
+        
+        public final long count;
+        public final long units;
+        public final BigDecimal value;
+        public final BigDecimal priceSum;
+        public final BigDecimal minPrice;
+        public final BigDecimal maxPrice;
+        public final long lowStock;
+        
+        public InventoryAggregate(long count, long units, BigDecimal value, BigDecimal priceSum,
+                                  BigDecimal minPrice, BigDecimal maxPrice, long lowStock) {
+            this.count = count;
+            this.units = units;
+            this.value = value;
+            this.priceSum = priceSum;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.lowStock = lowStock;
+        }
+        
+        // SUM renvoie NULL sur une table vide ; les types numériques varient selon la base (Long, BigInteger...)
+        static InventoryAggregate fromRow(Object[] row) {
+            return new InventoryAggregate(
+                toLong(row[0]), toLong(row[1]), toBigDecimal(row[2]), toBigDecimal(row[3]),
+                row[4] != null ? toBigDecimal(row[4]) : null,
+                row[5] != null ? toBigDecimal(row[5]) : null,
+                toLong(row[6]));
+        }
+        
+        private static long toLong(Object value) {
+            return value != null ? ((Number) value).longValue() : 0;
+        }
+        
+        private static BigDecimal toBigDecimal(Object value) {
+            if (value == null) {
+                return BigDecimal.ZERO;
+            }
+            return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+        }
+    }
+
+    /**
+     * Validation de la connexion à la base (SELECT 1), pour la sonde de readiness
+     */
+    public void ping() {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.createNativeQuery("SELECT 1").getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+
     public long count() {
         EntityManager em = HibernateUtil.getEntityManager();
         try {
             TypedQuery<Long> query = em.createQuery("SELECT COUNT(p) FROM Product p", Long.class);
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
             return query.getSingleResult();
         } finally {
             em.close();
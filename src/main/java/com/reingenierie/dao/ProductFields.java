@@ -0,0 +1,142 @@
+package com.reingenierie.dao;
+
+import com.reingenierie.model.Product;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Projection demandée via ?fields=id,name,price : sous-ensemble ordonné des attributs de Product
+ *
+ * - compilée en requête JPQL "SELECT p.id AS id, p.name AS name ..." lue en Tuple : aucune entité gérée,
+ *   donc ni contexte de persistance à remplir ni dirty-checking, et seules les colonnes demandées sont lues
+ * - chaque ligne est sérialisée telle quelle (Map champ → valeur, dans l'ordre demandé)
+ * - l'id est toujours inclus (curseur de pagination, identification côté client)
+ */
+public final class ProductFields {
+
+    // Attributs projetables, dans l'ordre de Product, avec leur lecture sur une entité déjà chargée
+    private static final Map<String, Function<Product, Object>> ATTRIBUTES = new LinkedHashMap<>();
+
+    static {
+        ATTRIBUTES.put("id", Product::getId);
+        ATTRIBUTES.put("name", Product::getName);
+        ATTRIBUTES.put("description", Product::getDescription);
+        ATTRIBUTES.put("price", Product::getPrice);
+        ATTRIBUTES.put("quantity", Product::getQuantity);
+        ATTRIBUTES.put("createdAt", Product::getCreatedAt);
+        ATTRIBUTES.put("updatedAt", Product::getUpdatedAt);
+        ATTRIBUTES.put("version", Product::getVersion);
+    }
+
+    private final List<String> names;
+
+    private ProductFields(List<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Analyse le paramètre ?fields= (liste séparée par des virgules).
+     * Retourne null si le paramètre est absent (entité complète) ; IllegalArgumentException si un champ est inconnu.
+     */
+    public static ProductFields parse(String param) {
+        if (param == null || param.isBlank()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        names.add("id");
+        for (String field : param.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!ATTRIBUTES.containsKey(name)) {
+                throw new IllegalArgumentException("Champ inconnu dans 'fields' : " + name
+                    + " (disponibles : " + String.join(", ", ATTRIBUTES.keySet()) + ")");
+            }
+            names.add(name);
+        }
+        return new ProductFields(List.copyOf(names));
+    }
+
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * Même projection complétée d'un champ (ex. champ de tri, nécessaire au curseur)
+     */
+    public ProductFields including(String name) {
+        if (names.contains(name)) {
+            return this;
+        }
+        List<String> extended = new ArrayList<>(names);
+        extended.add(name);
+        return new ProductFields(List.copyOf(extended));
+    }
+
+    /**
+     * Clause SELECT JPQL : "p.id AS id, p.name AS name, ..."
+     */
+    String jpqlSelect(String alias) {
+        StringBuilder select = new StringBuilder();
+        for (String name : names) {
+            if (select.length() > 0) {
+                select.append(", ");
+            }
+            select.append(alias).append('.').append(name).append(" AS ").append(name);
+        }
+        return select.toString();
+    }
+
+    /**
+     * Sélections Criteria équivalentes (alias = nom du champ, lu ensuite par toMap)
+     */
+    List<Selection<?>> selections(Root<Product> root) {
+        List<Selection<?>> selections = new ArrayList<>(names.size());
+        for (String name : names) {
+            selections.add(root.get(name).alias(name));
+        }
+        return selections;
+    }
+
+    Map<String, Object> toMap(Tuple tuple) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String name : names) {
+            row.put(name, tuple.get(name));
+        }
+        return row;
+    }
+
+    /**
+     * Même projection appliquée à une entité déjà en mémoire (cache, index de recherche)
+     */
+    public Map<String, Object> project(Product product) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (String name : names) {
+            row.put(name, ATTRIBUTES.get(name).apply(product));
+        }
+        return row;
+    }
+
+    public List<Map<String, Object>> project(List<Product> products) {
+        List<Map<String, Object>> rows = new ArrayList<>(products.size());
+        for (Product product : products) {
+            rows.add(project(product));
+        }
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+}
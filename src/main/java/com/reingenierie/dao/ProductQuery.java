@@ -0,0 +1,279 @@
+package com.reingenierie.dao;
+
+import com.reingenierie.model.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+
+/**
+ * Filtres et tri de GET /api/products, compilés en requête Criteria par ProductDAO
+ *
+ * - minPrice / maxPrice, minQuantity / maxQuantity : bornes incluses
+ * - createdAfter / updatedAfter (inclus), createdBefore / updatedBefore (exclus) : date ISO-8601
+ *   (2024-01-31) ou date-heure (2024-01-31T12:00:00)
+ * - sort=price, sort=-price... : un seul champ de tri (id, name, price, quantity, createdAt, updatedAt), départagé par l'id ;
+ *   chaque filtre et chaque tri est servi par un index : (price, id), (quantity, id), (created_at, id),
+ *   (updated_at, id) des migrations 007 à 010, name (002), clé primaire
+ * - pagination par curseur (keyset) sur (valeur du champ de tri, id) : pas d'OFFSET
+ */
+public final class ProductQuery {
+
+    /**
+     * Champs de tri : attribut de Product, type de la valeur du curseur et lecture sur une entité
+     */
+    public enum Sort {
+        ID("id"),
+        NAME("name"),
+        PRICE("price"),
+        QUANTITY("quantity"),
+        CREATED_AT("createdAt"),
+        UPDATED_AT("updatedAt");
+
+        final String attribute;
+
+        Sort(String attribute) {
+            this.attribute = attribute;
+        }
+
+        static Sort fromAttribute(String attribute) {
+            for (Sort sort : values()) {
+                if (sort.attribute.equals(attribute)) {
+                    return sort;
+                }
+            }
+            return null;
+        }
+
+        Object value(Product product) {
+            return switch (this) {
+                case ID -> product.getId();
+                case NAME -> product.getName();
+                case PRICE -> product.getPrice();
+                case QUANTITY -> product.getQuantity();
+                case CREATED_AT -> product.getCreatedAt();
+                case UPDATED_AT -> product.getUpdatedAt();
+            };
+        }
+
+        Object parse(String value) {
+            return switch (this) {
+                case ID -> Long.valueOf(value);
+                case NAME -> value;
+                case PRICE -> new BigDecimal(value);
+                case QUANTITY -> Integer.valueOf(value);
+                case CREATED_AT, UPDATED_AT -> LocalDateTime.parse(value);
+            };
+        }
+
+        String format(Object value) {
+            return value instanceof BigDecimal decimal ? decimal.toPlainString() : String.valueOf(value);
+        }
+    }
+
+    final BigDecimal minPrice;
+    final BigDecimal maxPrice;
+    final Integer minQuantity;
+    final Integer maxQuantity;
+    final LocalDateTime createdAfter;
+    final LocalDateTime createdBefore;
+    final LocalDateTime updatedAfter;
+    final LocalDateTime updatedBefore;
+    final Sort sort;
+    final boolean descending;
+    // Curseur : dernière ligne de la page précédente (null pour la première page)
+    final Long afterId;
+    final Object afterValue;
+
+    private ProductQuery(BigDecimal minPrice, BigDecimal maxPrice, Integer minQuantity, Integer maxQuantity,
+                         LocalDateTime createdAfter, LocalDateTime createdBefore,
+                         LocalDateTime updatedAfter, LocalDateTime updatedBefore,
+                         Sort sort, boolean descending, Long afterId, Object afterValue) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+        this.createdAfter = createdAfter;
+        this.createdBefore = createdBefore;
+        this.updatedAfter = updatedAfter;
+        this.updatedBefore = updatedBefore;
+        this.sort = sort;
+        this.descending = descending;
+        this.afterId = afterId;
+        this.afterValue = afterValue;
+    }
+
+    /**
+     * Lit les paramètres de filtre et de tri ({@code params} : nom → valeur, null si absent).
+     * Retourne null si aucun n'est présent (liste par ID, chemin habituel) ; IllegalArgumentException si invalide.
+     */
+    public static ProductQuery parse(Function<String, String> params) {
+        BigDecimal minPrice = decimal(params, "minPrice");
+        BigDecimal maxPrice = decimal(params, "maxPrice");
+        Integer minQuantity = integer(params, "minQuantity");
+        Integer maxQuantity = integer(params, "maxQuantity");
+        LocalDateTime createdAfter = dateTime(params, "createdAfter");
+        LocalDateTime createdBefore = dateTime(params, "createdBefore");
+        LocalDateTime updatedAfter = dateTime(params, "updatedAfter");
+        LocalDateTime updatedBefore = dateTime(params, "updatedBefore");
+        String sortParam = value(params, "sort");
+
+        if (minPrice == null && maxPrice == null && minQuantity == null && maxQuantity == null
+                && createdAfter == null && createdBefore == null && updatedAfter == null && updatedBefore == null
+                && sortParam == null) {
+            return null;
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("'minPrice' doit être inférieur ou égal à 'maxPrice'");
+        }
+        if (minQuantity != null && maxQuantity != null && minQuantity > maxQuantity) {
+            throw new IllegalArgumentException("'minQuantity' doit être inférieur ou égal à 'maxQuantity'");
+        }
+
+        Sort sort = Sort.ID;
+        boolean descending = false;
+        if (sortParam != null) {
+            descending = sortParam.startsWith("-");
+            String attribute = descending ? sortParam.substring(1) : sortParam;
+            sort = Sort.fromAttribute(attribute);
+            if (sort == null) {
+                throw new IllegalArgumentException("Tri inconnu : " + sortParam
+                    + " (disponibles : id, name, price, quantity, createdAt, updatedAt, préfixe '-' pour l'ordre décroissant)");
+            }
+        }
+        return new ProductQuery(minPrice, maxPrice, minQuantity, maxQuantity, createdAfter, createdBefore,
+            updatedAfter, updatedBefore, sort, descending, null, null);
+    }
+
+    /**
+     * Watermark de synchronisation différentielle (?changedSince=, même format que les filtres de date),
+     * null si absent ; IllegalArgumentException si invalide
+     */
+    public static LocalDateTime parseChangedSince(Function<String, String> params) {
+        return dateTime(params, "changedSince");
+    }
+
+    /**
+     * Synchronisation différentielle : produits créés ou modifiés à partir de {@code since},
+     * dans l'ordre (updated_at, id) de l'index 010
+     */
+    public static ProductQuery changedSince(LocalDateTime since) {
+        return new ProductQuery(null, null, null, null, null, null, since, null, Sort.UPDATED_AT, false, null, null);
+    }
+
+    /**
+     * Même requête, reprise après la ligne (id, valeur du champ de tri sous forme texte) d'un curseur
+     */
+    public ProductQuery after(long id, String sortValue) {
+        Object value;
+        try {
+            value = sort == Sort.ID ? Long.valueOf(id) : sort.parse(sortValue);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        return new ProductQuery(minPrice, maxPrice, minQuantity, maxQuantity, createdAfter, createdBefore,
+            updatedAfter, updatedBefore, sort, descending, id, value);
+    }
+
+    /**
+     * Tri par ID croissant : curseur réduit au dernier ID (même forme que la liste non filtrée)
+     */
+    public boolean isSortedById() {
+        return sort == Sort.ID && !descending;
+    }
+
+    /**
+     * Identifiant du tri porté par les curseurs ("price", "-createdAt"...) : un curseur ne vaut que pour ce tri
+     */
+    public String sortKey() {
+        return (descending ? "-" : "") + sort.attribute;
+    }
+
+    /**
+     * Position de reprise d'un curseur : dernier ID et dernière valeur du champ de tri (null sans curseur)
+     */
+    public Long afterId() {
+        return afterId;
+    }
+
+    public Object afterValue() {
+        return afterValue;
+    }
+
+    public String sortAttribute() {
+        return sort.attribute;
+    }
+
+    public Object sortValue(Product product) {
+        return sort.value(product);
+    }
+
+    public String formatSortValue(Object value) {
+        return sort.format(value);
+    }
+
+    /**
+     * Forme canonique (clé du cache des réponses) : filtres présents et tri, sans le curseur
+     */
+    @Override
+    public String toString() {
+        StringBuilder key = new StringBuilder();
+        append(key, "minPrice", minPrice != null ? minPrice.toPlainString() : null);
+        append(key, "maxPrice", maxPrice != null ? maxPrice.toPlainString() : null);
+        append(key, "minQuantity", minQuantity);
+        append(key, "maxQuantity", maxQuantity);
+        append(key, "createdAfter", createdAfter);
+        append(key, "createdBefore", createdBefore);
+        append(key, "updatedAfter", updatedAfter);
+        append(key, "updatedBefore", updatedBefore);
+        append(key, "sort", sortKey());
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, String name, Object value) {
+        if (value != null) {
+            if (key.length() > 0) {
+                key.append('&');
+            }
+            key.append(name).append('=').append(value);
+        }
+    }
+
+    private static String value(Function<String, String> params, String name) {
+        String value = params.apply(name);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static BigDecimal decimal(Function<String, String> params, String name) {
+        String value = value(params, name);
+        try {
+            return value != null ? new BigDecimal(value) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Paramètre '" + name + "' invalide");
+        }
+    }
+
+    private static Integer integer(Function<String, String> params, String name) {
+        String value = value(params, name);
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Paramètre '" + name + "' invalide");
+        }
+    }
+
+    private static LocalDateTime dateTime(Function<String, String> params, String name) {
+        String value = value(params, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Paramètre '" + name + "' invalide (format attendu : "
+                + "2024-01-31 ou 2024-01-31T12:00:00)");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.reingenierie.metrics;
+
+import com.mchange.v2.c3p0.PooledDataSource;
+
+import java.sql.SQLException;
+
+/**
+ * Jauges du pool c3p0 (fournisseur par défaut) : connexions empruntées et threads en attente d'un checkout
+ *
+ * c3p0 n'a pas de hook de mesure des temps d'acquisition : seules les jauges sont disponibles,
+ * les histogrammes restent propres à HikariCP (ConnectionPoolMetrics).
+ */
+public class C3p0PoolGauges implements ConnectionPoolGauges {
+
+    private final PooledDataSource dataSource;
+    private final int maxConnections;
+
+    public C3p0PoolGauges(PooledDataSource dataSource, int maxConnections) {
+        this.dataSource = dataSource;
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public int activeConnections() {
+        try {
+            return dataSource.getNumBusyConnectionsDefaultUser();
+        } catch (SQLException e) {
+            // Pool fermé (arrêt en cours)
+            return 0;
+        }
+    }
+
+    @Override
+    public int pendingThreads() {
+        try {
+            return dataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    public int idleConnections() {
+        try {
+            return dataSource.getNumIdleConnectionsDefaultUser();
+        } catch (SQLException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Expose le pool dans /api/metrics (mêmes noms que ConnectionPoolMetrics)
+     */
+    public void register(HttpMetrics metrics) {
+        metrics.registerGauge("db_pool_connections_active", "Connexions empruntées au pool", this::activeConnections);
+        metrics.registerGauge("db_pool_connections_idle", "Connexions libres dans le pool", this::idleConnections);
+        metrics.registerGauge("db_pool_connections_pending", "Threads en attente d'une connexion", this::pendingThreads);
+        metrics.registerGauge("db_pool_connections_max", "Taille maximale du pool", this::maxConnections);
+    }
+}
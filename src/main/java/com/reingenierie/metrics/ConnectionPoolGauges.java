@@ -0,0 +1,13 @@
+package com.reingenierie.metrics;
+
+/**
+ * Jauges lues en direct sur le pool de connexions, quel que soit le fournisseur (c3p0 ou HikariCP)
+ */
+public interface ConnectionPoolGauges {
+
+    int activeConnections();
+
+    int pendingThreads();
+
+    int maxConnections();
+}
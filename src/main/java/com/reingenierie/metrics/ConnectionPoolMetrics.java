@@ -0,0 +1,131 @@
+package com.reingenierie.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Instrumentation du pool de connexions HikariCP
+ *
+ * - temps d'acquisition d'une connexion (attente du pool) et durée d'emprunt : histogrammes
+ * - timeouts d'acquisition (pool épuisé pendant DB_CONNECTION_TIMEOUT) : compteur
+ * - connexions actives / inactives / threads en attente : lus en direct sur le MXBean du pool
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory, ConnectionPoolGauges {
+
+    // Acquisition : quelques µs si une connexion est libre, jusqu'au timeout si le pool est saturé
+    private static final double[] ACQUIRE_BUCKETS = {
+        0.00001, 0.00005, 0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1.0, 5.0, 10.0, 30.0
+    };
+
+    private final LatencyHistogram acquireTime = new LatencyHistogram(ACQUIRE_BUCKETS);
+    private final LatencyHistogram usageTime = new LatencyHistogram();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private volatile HikariDataSource dataSource;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireTime.record(elapsedAcquiredNanos);
+                acquisitions.increment();
+                long max;
+                // CAS uniquement quand le maximum augmente (rare) : pas de contention en régime normal
+                while (elapsedAcquiredNanos > (max = maxAcquireNanos.get())
+                       && !maxAcquireNanos.compareAndSet(max, elapsedAcquiredNanos)) {
+                    Thread.onSpinWait();
+                }
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageTime.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Associe le pool dont les jauges sont lues (après sa création)
+     */
+    public void bind(HikariDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public int activeConnections() {
+        HikariPoolMXBean pool = pool();
+        return pool != null ? pool.getActiveConnections() : 0;
+    }
+
+    public int idleConnections() {
+        HikariPoolMXBean pool = pool();
+        return pool != null ? pool.getIdleConnections() : 0;
+    }
+
+    @Override
+    public int pendingThreads() {
+        HikariPoolMXBean pool = pool();
+        return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+    }
+
+    @Override
+    public int maxConnections() {
+        HikariDataSource ds = dataSource;
+        return ds != null ? ds.getMaximumPoolSize() : 0;
+    }
+
+    /**
+     * Expose le pool dans /api/metrics
+     */
+    public void register(HttpMetrics metrics) {
+        metrics.registerGauge("db_pool_connections_active", "Connexions empruntées au pool", this::activeConnections);
+        metrics.registerGauge("db_pool_connections_idle", "Connexions libres dans le pool", this::idleConnections);
+        metrics.registerGauge("db_pool_connections_pending", "Threads en attente d'une connexion", this::pendingThreads);
+        metrics.registerGauge("db_pool_connections_max", "Taille maximale du pool", this::maxConnections);
+        metrics.registerCounter("db_pool_connection_timeouts_total",
+            "Acquisitions abandonnées après DB_CONNECTION_TIMEOUT (pool épuisé)", timeouts::sum);
+        metrics.registerHistogram("db_pool_connection_acquire_seconds",
+            "Temps d'attente pour obtenir une connexion du pool", acquireTime);
+        metrics.registerHistogram("db_pool_connection_usage_seconds",
+            "Durée d'emprunt d'une connexion (de l'acquisition à la restitution)", usageTime);
+    }
+
+    /**
+     * Instantané pour GET /api/stats/pool
+     */
+    public Map<String, Object> snapshot() {
+        long count = acquisitions.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("provider", "hikari");
+        result.put("active", activeConnections());
+        result.put("idle", idleConnections());
+        result.put("pending", pendingThreads());
+        result.put("max", maxConnections());
+        result.put("acquisitions", count);
+        result.put("timeouts", timeouts.sum());
+        result.put("avgAcquireMicros", count == 0 ? 0 : acquireTime.sumSeconds() * 1_000_000 / count);
+        result.put("maxAcquireMicros", TimeUnit.NANOSECONDS.toMicros(maxAcquireNanos.get()));
+        return result;
+    }
+
+    private HikariPoolMXBean pool() {
+        HikariDataSource ds = dataSource;
+        return ds != null && !ds.isClosed() ? ds.getHikariPoolMXBean() : null;
+    }
+}
@@ -0,0 +1,227 @@
+package com.reingenierie.metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpResponseException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Métriques HTTP par route, exposées au format texte Prometheus (GET /api/metrics)
+ *
+ * - chaque route enregistrée via {@link MeteredRouter} a ses compteurs, créés une fois à l'enregistrement :
+ *   aucune recherche dans une table par requête, uniquement des incréments de LongAdder
+ * - latence : histogramme à seaux fixes (p99 par route via histogram_quantile côté Prometheus)
+ * - requêtes par code HTTP, erreurs (5xx), requêtes en cours
+ * - jauges applicatives enregistrées par les autres composants (registerGauge)
+ */
+public class HttpMetrics {
+
+    private final List<RouteMetrics> routes = new CopyOnWriteArrayList<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+    private final List<Counter> counters = new CopyOnWriteArrayList<>();
+    private final List<NamedHistogram> histograms = new CopyOnWriteArrayList<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final long startMillis = System.currentTimeMillis();
+
+    public HttpMetrics() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        registerGauge("http_server_requests_in_flight", "Requêtes HTTP en cours de traitement", inFlight::sum);
+        registerGauge("process_uptime_seconds", "Durée depuis le démarrage de l'application",
+            () -> (System.currentTimeMillis() - startMillis) / 1000.0);
+        registerGauge("jvm_memory_heap_used_bytes", "Mémoire heap utilisée",
+            () -> memory.getHeapMemoryUsage().getUsed());
+        registerGauge("jvm_threads_live", "Threads JVM vivants (hors threads virtuels)",
+            () -> ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    /**
+     * Enveloppe un handler : mesure sa durée et compte sa réponse sous (méthode, route)
+     */
+    public Handler wrap(HandlerType method, String path, Handler handler) {
+        RouteMetrics metrics = new RouteMetrics(method.name(), path);
+        routes.add(metrics);
+        return ctx -> {
+            long start = System.nanoTime();
+            inFlight.increment();
+            int status = 500;
+            try {
+                handler.handle(ctx);
+                status = ctx.statusCode();
+            } catch (HttpResponseException e) {
+                status = e.getStatus();
+                throw e;
+            } finally {
+                inFlight.decrement();
+                metrics.record(status, System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Jauge évaluée à chaque collecte (nom Prometheus en snake_case, sans label)
+     */
+    public void registerGauge(String name, String help, DoubleSupplier supplier) {
+        gauges.add(new Gauge(name, help, supplier));
+    }
+
+    /**
+     * Compteur cumulatif lu à chaque collecte (nom Prometheus se terminant par _total)
+     */
+    public void registerCounter(String name, String help, LongSupplier supplier) {
+        counters.add(new Counter(name, help, supplier));
+    }
+
+    /**
+     * Histogramme applicatif sans label (ex. temps d'acquisition d'une connexion)
+     */
+    public void registerHistogram(String name, String help, LatencyHistogram histogram) {
+        histograms.add(new NamedHistogram(name, help, histogram));
+    }
+
+    /**
+     * Handler de GET /api/metrics
+     */
+    public void scrape(Context ctx) {
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(toPrometheusText());
+    }
+
+    /**
+     * Toutes les métriques au format d'exposition texte Prometheus 0.0.4
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(8192);
+
+        header(out, "http_server_requests_seconds", "Latence des requêtes HTTP par route", "histogram");
+        for (RouteMetrics route : routes) {
+            histogram(out, "http_server_requests_seconds", route.labelPrefix, route.latency);
+        }
+
+        header(out, "http_server_requests_total", "Requêtes HTTP par route et code de réponse", "counter");
+        for (RouteMetrics route : routes) {
+            for (Map.Entry<Integer, Long> entry : route.statusCounts().entrySet()) {
+                sample(out, "http_server_requests_total", route.labels(",status=\"" + entry.getKey() + "\""), entry.getValue());
+            }
+        }
+
+        header(out, "http_server_requests_errors_total", "Réponses HTTP 5xx par route", "counter");
+        for (RouteMetrics route : routes) {
+            sample(out, "http_server_requests_errors_total", route.labels(""), route.errors.sum());
+        }
+
+        for (NamedHistogram histogram : histograms) {
+            header(out, histogram.name, histogram.help, "histogram");
+            histogram(out, histogram.name, "", histogram.histogram);
+        }
+
+        for (Counter counter : counters) {
+            header(out, counter.name, counter.help, "counter");
+            sample(out, counter.name, "", counter.supplier.getAsLong());
+        }
+
+        for (Gauge gauge : gauges) {
+            header(out, gauge.name, gauge.help, "gauge");
+            double value;
+            try {
+                value = gauge.supplier.getAsDouble();
+            } catch (RuntimeException e) {
+                // Une jauge en échec (ex. pool fermé) ne doit pas empêcher la collecte des autres
+                value = Double.NaN;
+            }
+            sample(out, gauge.name, "", value);
+        }
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        String[] bounds = histogram.bucketLabels();
+        long[] counts = histogram.cumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            sample(out, name + "_bucket", prefix + "le=\"" + bounds[i] + "\"", counts[i]);
+        }
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", counts[counts.length - 1]);
+        sample(out, name + "_sum", labels, histogram.sumSeconds());
+        sample(out, name + "_count", labels, counts[counts.length - 1]);
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (Double.isNaN(value)) {
+            out.append("NaN");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Compteurs d'une route (méthode + chemin déclaré, ex. GET /api/products/{id})
+     */
+    private static final class RouteMetrics {
+        final String labelPrefix;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final ConcurrentHashMap<Integer, LongAdder> byStatus = new ConcurrentHashMap<>();
+
+        RouteMetrics(String method, String path) {
+            this.labelPrefix = "method=\"" + escape(method) + "\",route=\"" + escape(path) + "\"";
+        }
+
+        void record(int status, long nanos) {
+            latency.record(nanos);
+            LongAdder counter = byStatus.get(status);
+            if (counter == null) {
+                counter = byStatus.computeIfAbsent(status, key -> new LongAdder());
+            }
+            counter.increment();
+            if (status >= 500) {
+                errors.increment();
+            }
+        }
+
+        String labels(String extra) {
+            return labelPrefix + extra;
+        }
+
+        Map<Integer, Long> statusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            byStatus.forEach((status, count) -> counts.put(status, count.sum()));
+            return counts;
+        }
+    }
+
+    private record Gauge(String name, String help, DoubleSupplier supplier) {
+    }
+
+    private record Counter(String name, String help, LongSupplier supplier) {
+    }
+
+    private record NamedHistogram(String name, String help, LatencyHistogram histogram) {
+    }
+}
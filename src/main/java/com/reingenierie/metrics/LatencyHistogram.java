@@ -0,0 +1,79 @@
+package com.reingenierie.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogramme de latence à seaux fixes, au format des histogrammes Prometheus (seaux cumulés "le")
+ *
+ * - enregistrement sans verrou : un LongAdder par seau (pas de contention entre threads de requête)
+ * - bornes fixes en secondes (par défaut de 0,5 ms à 10 s) : p99 calculé côté Prometheus avec histogram_quantile()
+ */
+public class LatencyHistogram {
+
+    // Bornes par défaut (requêtes HTTP), en secondes (le seau +Inf est implicite)
+    static final double[] HTTP_BUCKETS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.0075, 0.01, 0.025, 0.05, 0.075,
+        0.1, 0.25, 0.5, 0.75, 1.0, 2.5, 5.0, 10.0
+    };
+
+    // Valeurs du label "le" (0.0005, 1, 10...) et bornes en nanosecondes
+    private final String[] bucketLabels;
+    private final long[] bucketBoundsNanos;
+    // buckets[i] : observations dans ]bound[i-1], bound[i]] ; dernier seau : au-delà de la dernière borne
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        this(HTTP_BUCKETS);
+    }
+
+    /**
+     * @param boundsSeconds bornes supérieures croissantes des seaux, en secondes
+     */
+    public LatencyHistogram(double... boundsSeconds) {
+        this.bucketLabels = new String[boundsSeconds.length];
+        this.bucketBoundsNanos = new long[boundsSeconds.length];
+        for (int i = 0; i < boundsSeconds.length; i++) {
+            bucketLabels[i] = BigDecimal.valueOf(boundsSeconds[i]).stripTrailingZeros().toPlainString();
+            bucketBoundsNanos[i] = (long) (boundsSeconds[i] * 1_000_000_000L);
+        }
+        this.buckets = new LongAdder[boundsSeconds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int index = 0;
+        while (index < bucketBoundsNanos.length && nanos > bucketBoundsNanos[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Comptes cumulés par seau (le dernier élément correspond à +Inf, c'est-à-dire au nombre total)
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long cumulative = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            cumulative += buckets[i].sum();
+            counts[i] = cumulative;
+        }
+        return counts;
+    }
+
+    /**
+     * Libellés "le" des seaux finis (même ordre que cumulativeCounts, sans +Inf)
+     */
+    public String[] bucketLabels() {
+        return bucketLabels;
+    }
+
+    public double sumSeconds() {
+        return sumNanos.sum() / 1_000_000_000.0;
+    }
+}
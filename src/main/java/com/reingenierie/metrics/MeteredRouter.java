@@ -0,0 +1,44 @@
+package com.reingenierie.metrics;
+
+import io.javalin.Javalin;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+
+/**
+ * Enregistrement des routes Javalin avec mesure automatique (mêmes méthodes que Javalin : get, post...)
+ */
+public class MeteredRouter {
+
+    private final Javalin app;
+    private final HttpMetrics metrics;
+
+    public MeteredRouter(Javalin app, HttpMetrics metrics) {
+        this.app = app;
+        this.metrics = metrics;
+    }
+
+    public MeteredRouter get(String path, Handler handler) {
+        return add(HandlerType.GET, path, handler);
+    }
+
+    public MeteredRouter post(String path, Handler handler) {
+        return add(HandlerType.POST, path, handler);
+    }
+
+    public MeteredRouter put(String path, Handler handler) {
+        return add(HandlerType.PUT, path, handler);
+    }
+
+    public MeteredRouter patch(String path, Handler handler) {
+        return add(HandlerType.PATCH, path, handler);
+    }
+
+    public MeteredRouter delete(String path, Handler handler) {
+        return add(HandlerType.DELETE, path, handler);
+    }
+
+    private MeteredRouter add(HandlerType method, String path, Handler handler) {
+        app.addHandler(method, path, metrics.wrap(method, path, handler));
+        return this;
+    }
+}
@@ -1,15 +1,23 @@
 package com.reingenierie.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Product {
     
+    // Séquence avec optimiseur "pooled" : un appel à la séquence réserve 50 IDs,
+    // ce qui permet à Hibernate de regrouper les INSERT en batch JDBC (impossible avec IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 100)
@@ -27,8 +35,16 @@ public class Product {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
-    @Column(name = "updated_at")
+    @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
+    
+    // Verrouillage optimiste : incrémenté à chaque mise à jour.
+    // DEFAULT 0 : hbm2ddl (update) peut ajouter la colonne NOT NULL à une table déjà remplie
+    // (même résultat que la migration 005, qui reste la voie normale)
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
 
     // Constructors
     public Product() {
@@ -100,6 +116,26 @@ public class Product {
         this.updatedAt = updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    // updated_at renseigné dès l'insertion : la synchronisation différentielle (?changedSince=) lit une seule colonne
+    @PrePersist
+    protected void onCreate() {
+        if (this.createdAt == null) {
+            this.createdAt = LocalDateTime.now();
+        }
+        if (this.updatedAt == null) {
+            this.updatedAt = this.createdAt;
+        }
+    }
+
+    // PostgreSQL : le trigger de la migration 012 remplace updated_at par l'horloge de la base
     @PreUpdate
     protected void onUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -115,6 +151,7 @@ public class Product {
                 ", quantity=" + quantity +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,46 @@
+package com.reingenierie.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Trace d'un produit supprimé (table product_tombstones, migration 011)
+ *
+ * Écrite dans la transaction de la suppression : GET /api/products?changedSince= renvoie les IDs supprimés
+ * depuis le watermark du client. Les IDs ne sont jamais réutilisés (séquence), une trace par produit suffit.
+ */
+@Entity
+@Table(name = "product_tombstones")
+public class ProductTombstone {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    public ProductTombstone() {
+    }
+
+    public ProductTombstone(Long productId, LocalDateTime deletedAt) {
+        this.productId = productId;
+        this.deletedAt = deletedAt;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -0,0 +1,136 @@
+package com.reingenierie.service;
+
+import com.reingenierie.metrics.ConnectionPoolGauges;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sondes de santé servies depuis un état en cache (aucune I/O dans le thread de la requête)
+ *
+ * - liveness : le processus répond, rien d'autre n'est vérifié (redémarrer le pod ne répare pas une base en panne)
+ * - readiness : un thread de fond exécute SELECT 1 toutes les HEALTH_CHECK_INTERVAL_MS ; le pod est prêt si
+ *   le dernier contrôle a réussi, date de moins de HEALTH_CHECK_STALE_MS et si le pool de connexions
+ *   n'est pas saturé (plus de HEALTH_POOL_MAX_PENDING threads en attente d'une connexion, c3p0 comme HikariCP)
+ * Un contrôle bloqué (base qui ne répond plus) rend l'état périmé, donc le pod non prêt.
+ */
+public class HealthService {
+
+    private final ProductService productService;
+    private final ConnectionPoolGauges poolGauges;
+    private final long intervalMs;
+    private final long staleMs;
+    private final int maxPoolPending;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Snapshot snapshot = new Snapshot(false, "disconnected", "Aucun contrôle effectué", 0, 0, null);
+    private volatile boolean shuttingDown = false;
+
+    public HealthService(ProductService productService, ConnectionPoolGauges poolGauges,
+                         long intervalMs, long staleMs, int maxPoolPending) {
+        this.productService = productService;
+        this.poolGauges = poolGauges;
+        this.intervalMs = intervalMs;
+        this.staleMs = staleMs;
+        this.maxPoolPending = maxPoolPending;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "health-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Premier contrôle synchrone (pod prêt dès le démarrage si la base répond), puis contrôles périodiques
+     */
+    public void start() {
+        if (poolGauges == null) {
+            System.err.println("⚠ Jauges du pool indisponibles : la readiness ne tient pas compte de la saturation du pool");
+        }
+        refresh();
+        refresher.scheduleWithFixedDelay(this::refresh, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arrêt : le pod se déclare non prêt immédiatement (plus de nouveau trafic pendant l'arrêt)
+     */
+    public void shutdown() {
+        shuttingDown = true;
+        refresher.shutdownNow();
+    }
+
+    public Map<String, Object> liveness() {
+        return Map.of("status", "UP");
+    }
+
+    public boolean isReady() {
+        Snapshot current = snapshot;
+        return current.ready && !shuttingDown && !isStale(current);
+    }
+
+    /**
+     * Corps de la réponse de readiness (construit à partir du dernier contrôle, en O(1))
+     */
+    public Map<String, Object> readiness() {
+        Snapshot current = snapshot;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", isReady() ? "UP" : "DOWN");
+        result.put("database", current.database);
+        if (shuttingDown) {
+            result.put("reason", "Arrêt en cours");
+        } else if (isStale(current)) {
+            result.put("reason", "Dernier contrôle de la base trop ancien (base bloquée ?)");
+        } else if (current.reason != null) {
+            result.put("reason", current.reason);
+        }
+        result.put("checkedAt", current.checkedAtMillis);
+        result.put("checkLatencyMicros", current.checkLatencyMicros);
+        if (current.pool != null) {
+            result.put("pool", current.pool);
+        }
+        return result;
+    }
+
+    private boolean isStale(Snapshot current) {
+        return System.currentTimeMillis() - current.checkedAtMillis > staleMs;
+    }
+
+    private void refresh() {
+        long start = System.nanoTime();
+        boolean databaseUp;
+        String reason = null;
+        try {
+            productService.checkDatabase();
+            databaseUp = true;
+        } catch (Exception e) {
+            databaseUp = false;
+            reason = "Base de données injoignable : " + e.getMessage();
+        }
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        Map<String, Object> pool = null;
+        boolean poolSaturated = false;
+        if (poolGauges != null) {
+            int pending = poolGauges.pendingThreads();
+            poolSaturated = pending > maxPoolPending;
+            pool = new LinkedHashMap<>();
+            pool.put("active", poolGauges.activeConnections());
+            pool.put("max", poolGauges.maxConnections());
+            pool.put("pending", pending);
+            pool.put("saturated", poolSaturated);
+            if (poolSaturated && reason == null) {
+                reason = "Pool de connexions saturé : " + pending + " thread(s) en attente";
+            }
+        }
+
+        snapshot = new Snapshot(databaseUp && !poolSaturated, databaseUp ? "connected" : "disconnected",
+            reason, System.currentTimeMillis(), latencyMicros, pool);
+    }
+
+    private record Snapshot(boolean ready, String database, String reason, long checkedAtMillis,
+                            long checkLatencyMicros, Map<String, Object> pool) {
+    }
+}
@@ -0,0 +1,316 @@
+package com.reingenierie.service;
+
+import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.util.HibernateUtil;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'inventaire (GET /api/stats) tenues à jour en mémoire, sans requête SQL par appel
+ *
+ * - chaque écriture réussie de ProductService applique sa variation (ancien état → nouvel état) :
+ *   nombre de produits, unités en stock, valeur (prix × quantité), somme des prix, produits en stock bas
+ * - prix min / max : étendus à l'ajout ; la disparition d'un extrême déclenche une réconciliation anticipée
+ * - réconciliation périodique (STATS_RECONCILE_INTERVAL_MS) contre une requête d'agrégats : corrige la dérive
+ *   due aux écritures des autres pods, aux écritures en échec et aux écritures concurrentes de la réconciliation
+ * - STATS_MODE=approximate (PostgreSQL, très grandes tables) : la réconciliation ne parcourt plus la table,
+ *   le nombre de produits vient de pg_class.reltuples et les autres agrégats d'un échantillon
+ *   TABLESAMPLE SYSTEM (STATS_SAMPLE_PERCENT % des pages) extrapolé à ce nombre
+ *
+ * Montants tenus en centimes (long) : les prix sont en NUMERIC(10,2).
+ */
+public class InventoryStats {
+
+    private final ProductDAO productDAO;
+    private final boolean approximate;
+    private final int lowStockThreshold;
+    private final double samplePercent;
+    private final long intervalMs;
+    private final long debounceMs;
+    private final ScheduledExecutorService reconciler;
+    private final AtomicBoolean reconciliationRequested = new AtomicBoolean();
+    // Incrémentée à chaque variation ou réconciliation (ETag de GET /api/stats)
+    private final LongAdder revision = new LongAdder();
+
+    // État courant : remplacé en bloc à chaque réconciliation
+    private volatile State state = new State(ProductDAO.InventoryAggregate.EMPTY, 0, false);
+    private volatile long lastReconciliationMillis = 0;
+    private volatile long lastCountDrift = 0;
+
+    public InventoryStats(ProductDAO productDAO, String mode, int lowStockThreshold, double samplePercent,
+                          long intervalMs, long debounceMs) {
+        this.productDAO = productDAO;
+        this.approximate = "approximate".equalsIgnoreCase(mode);
+        this.lowStockThreshold = lowStockThreshold;
+        this.samplePercent = samplePercent;
+        this.intervalMs = intervalMs;
+        this.debounceMs = debounceMs;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "inventory-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Première réconciliation synchrone (statistiques justes dès le démarrage), puis réconciliations périodiques
+     */
+    public void start() {
+        if (approximate && !HibernateUtil.isPostgreSQL()) {
+            System.out.println("STATS_MODE=approximate ignoré (PostgreSQL uniquement) : statistiques exactes");
+        }
+        reconcileSafely();
+        reconciler.scheduleWithFixedDelay(this::reconcileSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    /**
+     * Applique la variation d'une écriture : ancien état (prix, quantité) → nouvel état.
+     * Ancien état null pour une création, nouvel état null pour une suppression.
+     */
+    public void change(BigDecimal oldPrice, Integer oldQuantity, BigDecimal newPrice, Integer newQuantity) {
+        State current = state;
+        revision.increment();
+        boolean hadRow = oldPrice != null && oldQuantity != null;
+        boolean hasRow = newPrice != null && newQuantity != null;
+        long oldCents = hadRow ? toCents(oldPrice) : 0;
+        long newCents = hasRow ? toCents(newPrice) : 0;
+
+        if (hadRow) {
+            current.count.decrement();
+            current.units.add(-oldQuantity);
+            current.valueCents.add(-oldCents * oldQuantity);
+            current.priceSumCents.add(-oldCents);
+            if (oldQuantity < lowStockThreshold) {
+                current.lowStock.decrement();
+            }
+        }
+        if (hasRow) {
+            current.count.increment();
+            current.units.add(newQuantity);
+            current.valueCents.add(newCents * newQuantity);
+            current.priceSumCents.add(newCents);
+            if (newQuantity < lowStockThreshold) {
+                current.lowStock.increment();
+            }
+        }
+
+        if (hadRow && hasRow && oldCents == newCents) {
+            return;
+        }
+        if (hasRow) {
+            current.extendExtremes(newCents);
+        }
+        if (hadRow && (oldCents <= current.minCents.get() || oldCents >= current.maxCents.get())) {
+            // Le min ou le max a peut-être disparu : seule une requête peut retrouver le suivant
+            requestReconciliation();
+        }
+    }
+
+    /**
+     * Variation de stock seule (prix inchangé), ex. réservation du write-behind
+     */
+    public void quantityChanged(BigDecimal price, long before, long after) {
+        change(price, Math.toIntExact(before), price, Math.toIntExact(after));
+    }
+
+    /**
+     * Réconciliation anticipée (au plus une toutes les STATS_RECONCILE_DEBOUNCE_MS),
+     * après une écriture dont l'effet est incertain ou la disparition d'un prix extrême
+     */
+    public void requestReconciliation() {
+        if (reconciliationRequested.compareAndSet(false, true)) {
+            try {
+                reconciler.schedule(() -> {
+                    reconciliationRequested.set(false);
+                    reconcileSafely();
+                }, debounceMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // Arrêt en cours : plus de réconciliation
+                reconciliationRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * Recalcule les statistiques depuis la base et remplace l'état incrémental
+     */
+    public void reconcile() {
+        long start = System.nanoTime();
+        boolean fromSample = approximate && HibernateUtil.isPostgreSQL();
+        ProductDAO.InventoryAggregate aggregate = fromSample ? sampledAggregate() : null;
+        if (aggregate == null) {
+            fromSample = false;
+            aggregate = productDAO.aggregateInventory(lowStockThreshold);
+        }
+        State previous = state;
+        if (previous.reconciledAtMillis > 0) {
+            lastCountDrift = previous.count.sum() - aggregate.count;
+        }
+        state = new State(aggregate, System.currentTimeMillis(), fromSample);
+        revision.increment();
+        lastReconciliationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Agrégats de l'échantillon extrapolés à pg_class.reltuples
+     * (null si la table n'a jamais été analysée ou si l'échantillon est vide : petite table, requête exacte)
+     */
+    private ProductDAO.InventoryAggregate sampledAggregate() {
+        long estimate = productDAO.estimateCount();
+        if (estimate <= 0) {
+            return null;
+        }
+        ProductDAO.InventoryAggregate sample = productDAO.aggregateInventorySample(lowStockThreshold, samplePercent);
+        if (sample.count == 0) {
+            return null;
+        }
+        BigDecimal factor = BigDecimal.valueOf(estimate).divide(BigDecimal.valueOf(sample.count), 10, RoundingMode.HALF_UP);
+        return new ProductDAO.InventoryAggregate(
+            estimate,
+            BigDecimal.valueOf(sample.units).multiply(factor).setScale(0, RoundingMode.HALF_UP).longValue(),
+            sample.value.multiply(factor),
+            sample.priceSum.multiply(factor),
+            sample.minPrice,
+            sample.maxPrice,
+            BigDecimal.valueOf(sample.lowStock).multiply(factor).setScale(0, RoundingMode.HALF_UP).longValue());
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            System.err.println("Échec de la réconciliation des statistiques d'inventaire (nouvelle tentative au prochain tick): "
+                + e.getMessage());
+        }
+    }
+
+    public long revision() {
+        return revision.sum();
+    }
+
+    public long productCount() {
+        return state.count.sum();
+    }
+
+    public long totalUnits() {
+        return state.units.sum();
+    }
+
+    public BigDecimal inventoryValue() {
+        return BigDecimal.valueOf(state.valueCents.sum(), 2);
+    }
+
+    public long lowStockCount() {
+        return state.lowStock.sum();
+    }
+
+    /**
+     * Réponse de GET /api/stats, construite en O(1) depuis l'état en mémoire
+     */
+    public InventoryStatsResponse snapshot() {
+        State current = state;
+        long count = current.count.sum();
+        long min = current.minCents.get();
+        long max = current.maxCents.get();
+        return new InventoryStatsResponse(
+            count,
+            current.units.sum(),
+            BigDecimal.valueOf(current.valueCents.sum(), 2),
+            count > 0 ? BigDecimal.valueOf(current.priceSumCents.sum()).divide(BigDecimal.valueOf(count), 0, RoundingMode.HALF_UP).movePointLeft(2) : null,
+            count > 0 && min != Long.MAX_VALUE ? BigDecimal.valueOf(min, 2) : null,
+            count > 0 && max != Long.MIN_VALUE ? BigDecimal.valueOf(max, 2) : null,
+            current.lowStock.sum(),
+            lowStockThreshold,
+            current.approximate ? "approximate" : "exact",
+            current.reconciledAtMillis,
+            lastReconciliationMillis,
+            lastCountDrift);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    /**
+     * Agrégats courants : valeurs de la dernière réconciliation + variations appliquées depuis
+     */
+    private static final class State {
+        final LongAdder count = new LongAdder();
+        final LongAdder units = new LongAdder();
+        final LongAdder valueCents = new LongAdder();
+        final LongAdder priceSumCents = new LongAdder();
+        final LongAdder lowStock = new LongAdder();
+        final AtomicLong minCents;
+        final AtomicLong maxCents;
+        final long reconciledAtMillis;
+        final boolean approximate;
+
+        State(ProductDAO.InventoryAggregate base, long reconciledAtMillis, boolean approximate) {
+            count.add(base.count);
+            units.add(base.units);
+            valueCents.add(toCents(base.value));
+            priceSumCents.add(toCents(base.priceSum));
+            lowStock.add(base.lowStock);
+            this.minCents = new AtomicLong(base.minPrice != null ? toCents(base.minPrice) : Long.MAX_VALUE);
+            this.maxCents = new AtomicLong(base.maxPrice != null ? toCents(base.maxPrice) : Long.MIN_VALUE);
+            this.reconciledAtMillis = reconciledAtMillis;
+            this.approximate = approximate;
+        }
+
+        void extendExtremes(long cents) {
+            long current;
+            // CAS uniquement quand l'extrême change (rare) : pas de contention en régime normal
+            while (cents < (current = minCents.get()) && !minCents.compareAndSet(current, cents)) {
+                Thread.onSpinWait();
+            }
+            while (cents > (current = maxCents.get()) && !maxCents.compareAndSet(current, cents)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public static class InventoryStatsResponse {
+        public long totalProducts;
+        public long totalUnits;
+        public BigDecimal inventoryValue;
+        public BigDecimal averagePrice;
+        public BigDecimal minPrice;
+        public BigDecimal maxPrice;
+        public long lowStockCount;
+        public int lowStockThreshold;
+        public String mode;
+        public long reconciledAt;
+        public long lastReconciliationMillis;
+        // Écart (nombre de produits) entre l'état incrémental et la dernière réconciliation
+        public long lastCountDrift;
+
+        public InventoryStatsResponse(long totalProducts, long totalUnits, BigDecimal inventoryValue,
+                                      BigDecimal averagePrice, BigDecimal minPrice, BigDecimal maxPrice,
+                                      long lowStockCount, int lowStockThreshold, String mode, long reconciledAt,
+                                      long lastReconciliationMillis, long lastCountDrift) {
+            this.totalProducts = totalProducts;
+            this.totalUnits = totalUnits;
+            this.inventoryValue = inventoryValue;
+            this.averagePrice = averagePrice;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.lowStockCount = lowStockCount;
+            this.lowStockThreshold = lowStockThreshold;
+            this.mode = mode;
+            this.reconciledAt = reconciledAt;
+            this.lastReconciliationMillis = lastReconciliationMillis;
+            this.lastCountDrift = lastCountDrift;
+        }
+    }
+}
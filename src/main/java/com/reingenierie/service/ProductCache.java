@@ -0,0 +1,127 @@
+package com.reingenierie.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.reingenierie.model.Product;
+import com.reingenierie.util.EnvUtil;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Cache en mémoire (read-through) des produits par ID
+ * 
+ * - Taille bornée (PRODUCT_CACHE_MAX_SIZE) avec éviction W-TinyLFU (Caffeine)
+ * - Expiration après écriture (PRODUCT_CACHE_TTL_SECONDS)
+ * - Désactivable via PRODUCT_CACHE_ENABLED=false
+ * 
+ * Les produits absents ne sont pas mis en cache (pas de cache négatif).
+ */
+public class ProductCache {
+    
+    private final Cache<Long, Product> cache;
+    private final boolean enabled;
+    private final long maxSize;
+    private final long ttlSeconds;
+    
+    public ProductCache() {
+        this(EnvUtil.getEnvAsBoolean("PRODUCT_CACHE_ENABLED", true),
+             EnvUtil.getEnvAsInt("PRODUCT_CACHE_MAX_SIZE", 10000),
+             EnvUtil.getEnvAsInt("PRODUCT_CACHE_TTL_SECONDS", 60));
+    }
+    
+    public ProductCache(boolean enabled, long maxSize, long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlSeconds = ttlSeconds;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Lecture via le cache : en cas d'absence, le loader est appelé une seule fois par clé
+     * (les lectures concurrentes de la même clé attendent le même chargement).
+     */
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+    
+    /**
+     * Lecture groupée via le cache : les IDs absents du cache sont chargés en un seul appel au loader.
+     * Les produits introuvables n'apparaissent pas dans le résultat.
+     */
+    public Map<Long, Product> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, Product>> loader) {
+        if (!enabled) {
+            return loader.apply(Set.copyOf(ids));
+        }
+        return cache.getAll(ids, missing -> loader.apply(Set.copyOf(missing)));
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void put(Product product) {
+        if (enabled && product != null && product.getId() != null) {
+            cache.put(product.getId(), product);
+        }
+    }
+    
+    public void invalidate(Long id) {
+        if (id != null) {
+            cache.invalidate(id);
+        }
+    }
+    
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+    
+    public CacheStatsResponse stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatsResponse(
+            enabled,
+            cache.estimatedSize(),
+            maxSize,
+            ttlSeconds,
+            stats.hitCount(),
+            stats.missCount(),
+            stats.evictionCount(),
+            stats.hitRate()
+        );
+    }
+    
+    public static class CacheStatsResponse {
+        public boolean enabled;
+        public long size;
+        public long maxSize;
+        public long ttlSeconds;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public double hitRate;
+        
+        public CacheStatsResponse(boolean enabled, long size, long maxSize, long ttlSeconds,
+                                  long hits, long misses, long evictions, double hitRate) {
+            this.enabled = enabled;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.ttlSeconds = ttlSeconds;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.hitRate = hitRate;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.reingenierie.service;
+
+import com.reingenierie.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Journal des modifications du catalogue, servi en Server-Sent Events (GET /api/products/changes)
+ *
+ * - chaque écriture de ProductService (création, mise à jour, suppression, stock) est publiée avec un numéro
+ *   de séquence strictement croissant dans un tampon circulaire borné (CHANGE_FEED_CAPACITY événements)
+ * - les abonnés lisent le tampon à leur rythme (curseur = dernière séquence reçue) : pas de file par abonné,
+ *   la mémoire ne dépend ni du nombre ni de la lenteur des abonnés
+ * - un curseur sorti du tampon (événements écrasés avant d'être lus, ou Last-Event-ID inconnu) est signalé :
+ *   l'abonné doit recharger le catalogue puis repartir de la séquence courante
+ * - la première séquence est dérivée de l'horloge : après un redémarrage, un Last-Event-ID émis par
+ *   l'ancien processus est toujours antérieur au tampon, jamais confondu avec un nouvel événement
+ */
+public class ProductChangeFeed {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, STOCK;
+
+        public String eventName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final ProductChange[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    // Séquence du prochain événement ; le tampon contient les séquences [nextSequence - ring.length, nextSequence)
+    private long nextSequence;
+    private final long firstSequence;
+
+    public ProductChangeFeed(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacité du journal des modifications doit être positive");
+        }
+        this.ring = new ProductChange[capacity];
+        this.firstSequence = System.currentTimeMillis() * 1000;
+        this.nextSequence = firstSequence;
+    }
+
+    /**
+     * Publie une modification ({@code product} : état après l'écriture, null pour une suppression ou si inconnu)
+     */
+    public long publish(Type type, Long id, Product product) {
+        lock.lock();
+        try {
+            long sequence = nextSequence++;
+            ring[(int) (sequence % ring.length)] = new ProductChange(sequence, type.eventName(), id, product,
+                System.currentTimeMillis());
+            published.signalAll();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dernière séquence publiée (point de départ d'un nouvel abonné)
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return nextSequence - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Événements de séquence strictement supérieure à {@code afterSequence} (au plus {@code max}).
+     * Attend au plus {@code timeoutMs} si aucun n'est disponible (liste vide à l'expiration).
+     * Retourne {@link Batch#missed} si des événements postérieurs au curseur ne sont plus dans le tampon.
+     */
+    public Batch readAfter(long afterSequence, int max, long timeoutMs) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            while (afterSequence == nextSequence - 1 && remainingNanos > 0) {
+                remainingNanos = published.awaitNanos(remainingNanos);
+            }
+            long oldest = Math.max(firstSequence, nextSequence - ring.length);
+            if (afterSequence < oldest - 1 || afterSequence >= nextSequence) {
+                return Batch.missed(nextSequence - 1);
+            }
+            long from = afterSequence + 1;
+            long to = Math.min(nextSequence, from + max);
+            if (from >= to) {
+                return Batch.EMPTY;
+            }
+            List<ProductChange> changes = new ArrayList<>((int) (to - from));
+            for (long sequence = from; sequence < to; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return new Batch(changes, false, to - 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Événement du journal (corps JSON de l'événement SSE, dont le nom est {@code type})
+     */
+    public static class ProductChange {
+        public final long sequence;
+        public final String type;
+        public final Long id;
+        public final Product product;
+        public final long timestamp;
+
+        public ProductChange(long sequence, String type, Long id, Product product, long timestamp) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.product = product;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Résultat d'une lecture : événements dans l'ordre des séquences, ou curseur perdu (missed)
+     * avec la séquence à partir de laquelle repartir après rechargement
+     */
+    public static class Batch {
+        static final Batch EMPTY = new Batch(Collections.emptyList(), false, -1);
+
+        public final List<ProductChange> changes;
+        public final boolean missed;
+        public final long lastSequence;
+
+        Batch(List<ProductChange> changes, boolean missed, long lastSequence) {
+            this.changes = changes;
+            this.missed = missed;
+            this.lastSequence = lastSequence;
+        }
+
+        static Batch missed(long resumeAfter) {
+            return new Batch(Collections.emptyList(), true, resumeAfter);
+        }
+    }
+}
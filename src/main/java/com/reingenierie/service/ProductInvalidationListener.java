@@ -0,0 +1,296 @@
+package com.reingenierie.service;
+
+import com.reingenierie.dao.ProductChangeNotifications;
+import com.reingenierie.util.HibernateUtil;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Écoute du bus d'invalidation entre réplicas (LISTEN product_changes, voir ProductChangeNotifications)
+ *
+ * - une connexion PgJDBC dédiée, hors pool, et un thread démon par processus
+ * - notification d'un autre réplica → {@code onChanged(ids)} ; celles de ce processus sont ignorées
+ *   (ses caches sont déjà à jour), une notification "tout le catalogue" → {@code onResync}
+ * - attente par PGConnection.getNotifications(timeout) ; sans notification pendant INVALIDATION_POLL_MS,
+ *   un SELECT 1 vérifie la connexion (une coupure silencieuse ne laisse pas l'écoute bloquée)
+ * - connexion perdue : reconnexion avec backoff exponentiel, puis {@code onResync} : les notifications
+ *   émises pendant la coupure sont perdues, tous les caches locaux doivent être vidés
+ * - {@code onResync} (relecture de tout l'index de recherche) s'exécute sur un thread à part : l'écoute continue
+ *   pendant ce temps, et les demandes arrivées avant son démarrage sont regroupées en une seule
+ */
+public class ProductInvalidationListener {
+
+    private final String ignoredInstanceId;
+    private final Consumer<List<Long>> onChanged;
+    private final Runnable onResync;
+    private final int pollTimeoutMs;
+    private final long reconnectInitialMs;
+    private final long reconnectMaxMs;
+    private final Thread thread;
+    private final ExecutorService resyncExecutor;
+    // Vidage demandé et pas encore commencé : une nouvelle demande est alors sans effet
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private volatile boolean active;
+    private volatile int backendPid;
+    // Écoute établie au moins une fois ; une connexion (re)établie ensuite impose de tout invalider
+    private boolean listening;
+    private boolean resyncOnConnect;
+
+    // Métriques
+    private final LongAdder received = new LongAdder();
+    private final LongAdder invalidatedProducts = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    /**
+     * @param ignoredInstanceId instance dont les notifications sont ignorées (null : aucune)
+     */
+    public ProductInvalidationListener(String ignoredInstanceId, Consumer<List<Long>> onChanged, Runnable onResync,
+                                       int pollTimeoutMs, long reconnectInitialMs, long reconnectMaxMs) {
+        this.ignoredInstanceId = ignoredInstanceId;
+        this.onChanged = onChanged;
+        this.onResync = onResync;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.reconnectInitialMs = reconnectInitialMs;
+        this.reconnectMaxMs = reconnectMaxMs;
+        this.thread = new Thread(this::run, "product-invalidation-listener");
+        this.thread.setDaemon(true);
+        this.resyncExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread resyncThread = new Thread(r, "product-invalidation-resync");
+            resyncThread.setDaemon(true);
+            return resyncThread;
+        });
+    }
+
+    /**
+     * Démarre l'écoute et attend au plus {@code waitMs} que LISTEN soit actif. À appeler avant de remplir
+     * les caches : si l'écoute n'est pas établie à temps, la première connexion videra tous les caches.
+     */
+    public void start(long waitMs) {
+        running = true;
+        thread.start();
+        awaitListening(waitMs);
+    }
+
+    /**
+     * Attend au plus {@code waitMs} la première écoute ; au-delà, la connexion qui l'établira videra les caches
+     */
+    void awaitListening(long waitMs) {
+        long deadline = System.currentTimeMillis() + waitMs;
+        synchronized (this) {
+            long remaining = waitMs;
+            try {
+                while (!listening && remaining > 0) {
+                    wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!listening) {
+                resyncOnConnect = true;
+                System.err.println("⚠️  Bus d'invalidation : écoute non établie après " + waitMs + "ms, nouvelle tentative en arrière-plan");
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+        resyncExecutor.shutdownNow();
+        closeQuietly(connection);
+    }
+
+    private void run() {
+        long backoffMs = reconnectInitialMs;
+        while (running) {
+            try (Connection conn = HibernateUtil.openDedicatedConnection()) {
+                connection = conn;
+                listen(conn);
+                active = true;
+                backoffMs = reconnectInitialMs;
+                if (connected()) {
+                    requestResync();
+                    System.out.println("🔄 Bus d'invalidation reconnecté (pid " + backendPid + ") : vidage des caches locaux demandé");
+                } else {
+                    System.out.println("✅ Bus d'invalidation : LISTEN " + ProductChangeNotifications.CHANNEL
+                        + " (pid " + backendPid + ")");
+                }
+                poll(conn);
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                disconnected();
+                reconnects.increment();
+                System.err.println("⚠️  Bus d'invalidation interrompu (" + e.getMessage() + "), reconnexion dans "
+                    + backoffMs + "ms");
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoffMs = Math.min(backoffMs * 2, reconnectMaxMs);
+            } finally {
+                active = false;
+                connection = null;
+            }
+        }
+    }
+
+    private void listen(Connection conn) throws SQLException {
+        conn.setAutoCommit(true);
+        // Délai réseau borné : un SELECT 1 sur une connexion morte échoue au lieu de bloquer
+        conn.setNetworkTimeout(Runnable::run, pollTimeoutMs * 2);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("LISTEN " + ProductChangeNotifications.CHANNEL);
+            try (ResultSet rs = stmt.executeQuery("SELECT pg_backend_pid()")) {
+                rs.next();
+                backendPid = rs.getInt(1);
+            }
+        }
+    }
+
+    /**
+     * Écoute établie ; retourne true si les caches doivent être vidés (reconnexion, ou écoute tardive)
+     */
+    synchronized boolean connected() {
+        boolean resync = resyncOnConnect;
+        resyncOnConnect = true;
+        listening = true;
+        notifyAll();
+        return resync;
+    }
+
+    synchronized void disconnected() {
+        resyncOnConnect = true;
+    }
+
+    /**
+     * Vide les caches locaux sur le thread de resynchronisation (sans effet si un vidage attend déjà)
+     */
+    void requestResync() {
+        if (resyncPending.compareAndSet(false, true)) {
+            resyncExecutor.execute(this::resync);
+        }
+    }
+
+    private void resync() {
+        // Remis à false avant le vidage : une demande arrivée pendant celui-ci en relance un autre
+        resyncPending.set(false);
+        try {
+            onResync.run();
+            resyncs.increment();
+        } catch (RuntimeException e) {
+            System.err.println("Bus d'invalidation : erreur lors du vidage des caches : " + e.getMessage());
+        }
+    }
+
+    private void poll(Connection conn) throws SQLException {
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+            if (notifications == null || notifications.length == 0) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT 1");
+                }
+                continue;
+            }
+            for (PGNotification notification : notifications) {
+                handle(notification.getParameter());
+            }
+        }
+    }
+
+    void handle(String payload) {
+        ProductChangeNotifications.Notification notification = ProductChangeNotifications.parse(payload);
+        if (notification == null) {
+            invalid.increment();
+            System.err.println("Bus d'invalidation : notification ignorée (format inconnu) : " + payload);
+            return;
+        }
+        if (ignoredInstanceId != null && notification.isFrom(ignoredInstanceId)) {
+            ignored.increment();
+            return;
+        }
+        received.increment();
+        try {
+            if (notification.all) {
+                requestResync();
+            } else {
+                invalidatedProducts.add(notification.ids.size());
+                onChanged.accept(notification.ids);
+            }
+        } catch (RuntimeException e) {
+            // Une invalidation en échec ne doit pas interrompre l'écoute
+            System.err.println("Bus d'invalidation : erreur lors de l'invalidation : " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Déjà fermée
+            }
+        }
+    }
+
+    public boolean isConnected() {
+        return active;
+    }
+
+    /**
+     * PID du processus serveur de la connexion d'écoute (pg_terminate_backend pour tester la reconnexion)
+     */
+    public int backendPid() {
+        return backendPid;
+    }
+
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    public long reconnectCount() {
+        return reconnects.sum();
+    }
+
+    public long resyncCount() {
+        return resyncs.sum();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", true);
+        result.put("channel", ProductChangeNotifications.CHANNEL);
+        result.put("instance", ProductChangeNotifications.INSTANCE_ID);
+        result.put("connected", isConnected());
+        result.put("received", received.sum());
+        result.put("invalidatedProducts", invalidatedProducts.sum());
+        result.put("ignoredOwn", ignored.sum());
+        result.put("invalid", invalid.sum());
+        result.put("reconnects", reconnects.sum());
+        result.put("resyncs", resyncs.sum());
+        return result;
+    }
+}
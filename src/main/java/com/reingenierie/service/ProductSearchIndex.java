@@ -0,0 +1,299 @@
+package com.reingenierie.service;
+
+import com.reingenierie.model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index inversé en mémoire des trigrammes du nom (et optionnellement de la description)
+ *
+ * Alternative à l'index pg_trgm pour les déploiements où l'on ne peut pas installer
+ * d'extension PostgreSQL (SEARCH_INDEX_MODE=memory).
+ *
+ * - Chaque version de produit occupe un "slot" (int) ; les listes de postings sont des
+ *   tableaux d'int triés (les slots sont attribués de façon croissante)
+ * - Un slot ne garde que l'ID et les textes normalisés (pas l'entité) : une recherche retourne des IDs,
+ *   que ProductService relit via le cache produits (ou la base) au moment de répondre
+ * - Une mise à jour invalide l'ancien slot et en ajoute un nouveau ; les slots morts sont
+ *   filtrés à la lecture puis purgés par compaction
+ * - Une recherche intersecte les postings des trigrammes de la requête puis vérifie
+ *   la sous-chaîne sur les candidats (les trigrammes ne sont qu'un filtre)
+ */
+public class ProductSearchIndex {
+
+    private static final int GRAM = 3;
+    // Compaction quand les slots morts dépassent les slots vivants (et au moins ce seuil)
+    private static final int COMPACTION_MIN_DEAD = 1024;
+
+    private final boolean indexDescription;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Postings> postingsByGram = new HashMap<>();
+    private final Map<Long, Integer> slotByProductId = new HashMap<>();
+    private long[] ids = new long[1024];
+    // Nom normalisé, null pour un slot mort
+    private String[] names = new String[1024];
+    private String[] descriptions = new String[1024];
+    private int slotCount = 0;
+    private int deadSlots = 0;
+
+    public ProductSearchIndex(boolean indexDescription) {
+        this.indexDescription = indexDescription;
+    }
+
+    /**
+     * Ajoute ou remplace un produit dans l'index
+     */
+    public void put(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        String name = normalize(product.getName());
+        String description = indexDescription ? normalize(product.getDescription()) : null;
+        lock.writeLock().lock();
+        try {
+            removeSlot(product.getId());
+            addSlot(product.getId(), name, description);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeSlot(productId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByProductId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Recherche par sous-chaîne (insensible à la casse), triée par pertinence :
+     * nom exact, puis préfixe du nom, puis nom contenant, puis description ; à égalité nom le plus court puis ID.
+     * Retourne les IDs des produits trouvés, dans cet ordre.
+     */
+    public List<Long> search(String query, int limit) {
+        String term = normalize(query);
+        if (term.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<int[]> matches = new ArrayList<>();
+            if (term.length() < GRAM) {
+                // Requête trop courte pour les trigrammes : parcours des slots vivants (en mémoire)
+                for (int slot = 0; slot < slotCount; slot++) {
+                    collect(slot, term, matches);
+                }
+            } else {
+                int[] candidates = candidates(term);
+                for (int slot : candidates) {
+                    collect(slot, term, matches);
+                }
+            }
+            matches.sort(Comparator
+                .comparingInt((int[] m) -> m[1])
+                .thenComparingInt(m -> names[m[0]].length())
+                .thenComparingLong(m -> ids[m[0]]));
+            List<Long> result = new ArrayList<>(Math.min(limit, matches.size()));
+            for (int i = 0; i < matches.size() && i < limit; i++) {
+                result.add(ids[matches.get(i)[0]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collect(int slot, String term, List<int[]> matches) {
+        if (names[slot] == null) {
+            return;
+        }
+        int rank = rank(slot, term);
+        if (rank >= 0) {
+            matches.add(new int[] {slot, rank});
+        }
+    }
+
+    /**
+     * Rang de pertinence d'un slot pour le terme, -1 si le slot ne correspond pas
+     */
+    private int rank(int slot, String term) {
+        String name = names[slot];
+        if (name.equals(term)) {
+            return 0;
+        }
+        if (name.startsWith(term)) {
+            return 1;
+        }
+        if (name.contains(term)) {
+            return 2;
+        }
+        if (indexDescription && descriptions[slot] != null && descriptions[slot].contains(term)) {
+            return 3;
+        }
+        return -1;
+    }
+
+    /**
+     * Intersection des postings des trigrammes du terme, en partant de la liste la plus courte
+     */
+    private int[] candidates(String term) {
+        long[] grams = grams(term);
+        Postings[] lists = new Postings[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            Postings postings = postingsByGram.get(grams[i]);
+            if (postings == null) {
+                return new int[0];
+            }
+            lists[i] = postings;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+        int[] result = Arrays.copyOf(lists[0].slots, lists[0].size);
+        int resultSize = result.length;
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            resultSize = intersect(result, resultSize, lists[i]);
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * Intersection en place de deux listes triées ; retourne la nouvelle taille
+     */
+    private static int intersect(int[] target, int targetSize, Postings other) {
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        int[] slots = other.slots;
+        while (i < targetSize && j < other.size) {
+            if (target[i] < slots[j]) {
+                i++;
+            } else if (target[i] > slots[j]) {
+                j++;
+            } else {
+                target[k++] = target[i];
+                i++;
+                j++;
+            }
+        }
+        return k;
+    }
+
+    private void addSlot(long id, String name, String description) {
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            descriptions = Arrays.copyOf(descriptions, capacity);
+        }
+        int slot = slotCount++;
+        ids[slot] = id;
+        names[slot] = name;
+        descriptions[slot] = description;
+        slotByProductId.put(id, slot);
+
+        for (long gram : grams(names[slot])) {
+            postingsByGram.computeIfAbsent(gram, g -> new Postings()).add(slot);
+        }
+        if (indexDescription) {
+            for (long gram : grams(descriptions[slot])) {
+                postingsByGram.computeIfAbsent(gram, g -> new Postings()).add(slot);
+            }
+        }
+    }
+
+    private void removeSlot(Long productId) {
+        Integer slot = slotByProductId.remove(productId);
+        if (slot != null) {
+            names[slot] = null;
+            descriptions[slot] = null;
+            deadSlots++;
+        }
+    }
+
+    /**
+     * Reconstruit l'index à partir des slots vivants quand trop de slots sont morts
+     */
+    private void compactIfNeeded() {
+        if (deadSlots < COMPACTION_MIN_DEAD || deadSlots < slotByProductId.size()) {
+            return;
+        }
+        long[] oldIds = ids;
+        String[] oldNames = names;
+        String[] oldDescriptions = descriptions;
+        int oldSlotCount = slotCount;
+        int capacity = Math.max(1024, slotByProductId.size() * 2);
+        postingsByGram.clear();
+        slotByProductId.clear();
+        ids = new long[capacity];
+        names = new String[capacity];
+        descriptions = new String[capacity];
+        slotCount = 0;
+        deadSlots = 0;
+        for (int slot = 0; slot < oldSlotCount; slot++) {
+            if (oldNames[slot] != null) {
+                addSlot(oldIds[slot], oldNames[slot], oldDescriptions[slot]);
+            }
+        }
+    }
+
+    /**
+     * Trigrammes distincts d'une chaîne normalisée, encodés sur un long (3 x 16 bits)
+     */
+    private static long[] grams(String text) {
+        if (text == null || text.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Liste de postings : tableau d'int croissant, sans boxing
+     */
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size = 0;
+
+        void add(int slot) {
+            // Un même slot peut apparaître pour le nom et la description : éviter les doublons
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
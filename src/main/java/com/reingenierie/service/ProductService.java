@@ -1,89 +1,816 @@
 package com.reingenierie.service;
 
+import com.reingenierie.dao.BatchValidationException;
 import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.dao.ProductFields;
+import com.reingenierie.dao.ProductQuery;
 import com.reingenierie.model.Product;
+import com.reingenierie.model.ProductTombstone;
+import com.reingenierie.util.EnvUtil;
+import com.reingenierie.util.HibernateUtil;
+import jakarta.persistence.OptimisticLockException;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class ProductService {
     
+    // Nombre maximum de résultats renvoyés par une recherche sans limite explicite
+    private static final int DEFAULT_SEARCH_LIMIT = EnvUtil.getEnvAsInt("API_SEARCH_LIMIT", 50);
+    // Nombre de tentatives d'une mise à jour complète en cas de conflit de version
+    private static final int UPDATE_MAX_RETRIES = EnvUtil.getEnvAsInt("PRODUCT_UPDATE_MAX_RETRIES", 3);
+    // Nombre maximum d'opérations dans un POST /api/products/batch
+    private static final int BATCH_MAX_OPERATIONS = EnvUtil.getEnvAsInt("API_BATCH_MAX_OPERATIONS", 100000);
+    // Tant que des produits n'ont pas d'updated_at (migration 011), nouvelle vérification au plus toutes les N ms
+    private static final long CHANGE_SYNC_CHECK_INTERVAL_MS = 30000;
+    
     private final ProductDAO productDAO;
+    private final ProductCache productCache;
+    // Index de recherche en mémoire (SEARCH_INDEX_MODE=memory), null en mode SQL ; remplacé d'un bloc
+    // par un index reconstruit quand tous les caches sont vidés (invalidateAllLocal)
+    private volatile ProductSearchIndex searchIndex;
+    private volatile boolean searchIndexReady = false;
+    private final boolean searchIndexDescription = EnvUtil.getEnvAsBoolean("SEARCH_INDEX_DESCRIPTION", false);
+    // IDs écrits pendant une reconstruction de l'index (rejoués sur le nouvel index après l'échange), null sinon
+    private volatile Set<Long> searchIndexRebuildChanges;
+    private final Object searchIndexRebuildLock = new Object();
+    // Écriture différée des variations de stock (STOCK_WRITE_BEHIND=true), null sinon
+    private final StockWriteBehind stockWriteBehind;
+    // Statistiques d'inventaire tenues à jour par les écritures (réconciliées périodiquement avec la base)
+    private final InventoryStats inventoryStats;
+    // Version du catalogue : incrémentée à chaque écriture locale (ETag des listes)
+    private final AtomicLong catalogVersion = new AtomicLong();
+    // Abonnés notifiés de l'ID de chaque produit modifié (ex. cache des réponses encodées)
+    private final List<Consumer<Long>> changeListeners = new CopyOnWriteArrayList<>();
+    // Journal des modifications diffusé en Server-Sent Events (GET /api/products/changes)
+    private final ProductChangeFeed changeFeed = new ProductChangeFeed(EnvUtil.getEnvAsInt("CHANGE_FEED_CAPACITY", 1024));
+    // Synchronisation différentielle disponible (plus aucun produit sans updated_at) : définitif une fois vrai
+    private volatile boolean changeSyncReady = false;
+    private volatile long changeSyncCheckedAt;
     
     public ProductService() {
         this.productDAO = new ProductDAO();
+        this.productCache = new ProductCache();
+        this.inventoryStats = new InventoryStats(productDAO,
+            EnvUtil.getEnv("STATS_MODE", "exact"),
+            EnvUtil.getEnvAsInt("STATS_LOW_STOCK_THRESHOLD", 10),
+            EnvUtil.getEnvAsInt("STATS_SAMPLE_PERCENT", 1),
+            EnvUtil.getEnvAsInt("STATS_RECONCILE_INTERVAL_MS", 60000),
+            EnvUtil.getEnvAsInt("STATS_RECONCILE_DEBOUNCE_MS", 5000));
+        this.searchIndex = "memory".equalsIgnoreCase(EnvUtil.getEnv("SEARCH_INDEX_MODE", "sql"))
+            ? new ProductSearchIndex(searchIndexDescription)
+            : null;
+        this.stockWriteBehind = EnvUtil.getEnvAsBoolean("STOCK_WRITE_BEHIND", false)
+            ? new StockWriteBehind(productDAO,
+                EnvUtil.getEnvAsInt("STOCK_FLUSH_INTERVAL_MS", 5),
+                EnvUtil.getEnvAsInt("STOCK_RESERVATION_IDLE_MS", 60000),
+                ids -> ids.forEach(id -> {
+                    productCache.invalidate(id);
+                    productChanged(id);
+                    // Seul l'ID est connu ici : les abonnés relisent le produit
+                    changeFeed.publish(ProductChangeFeed.Type.STOCK, id, null);
+                }),
+                inventoryStats::quantityChanged)
+            : null;
+    }
+    
+    /**
+     * Arrêt propre : écrit les variations de stock encore en attente
+     */
+    public void shutdown() {
+        inventoryStats.shutdown();
+        if (stockWriteBehind != null) {
+            stockWriteBehind.shutdown();
+        }
+    }
+    
+    /**
+     * Calcule les statistiques d'inventaire et démarre leur réconciliation périodique.
+     * À appeler au démarrage du serveur (les outils d'administration n'en ont pas besoin).
+     */
+    public void startInventoryStats() {
+        long start = System.currentTimeMillis();
+        inventoryStats.start();
+        System.out.println("Statistiques d'inventaire calculées en " + (System.currentTimeMillis() - start) + "ms");
+    }
+    
+    /**
+     * Charge l'index de recherche en mémoire depuis la base (lecture en streaming).
+     * Sans effet en mode SQL. À appeler au démarrage, avant d'accepter du trafic.
+     */
+    public void loadSearchIndex() {
+        if (searchIndex == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long loaded = productDAO.streamAll(searchIndex::put);
+        searchIndexReady = true;
+        System.out.println("Index de recherche en mémoire chargé : " + loaded + " produits en "
+            + (System.currentTimeMillis() - start) + "ms");
     }
     
     public Product createProduct(String name, String description, BigDecimal price, Integer quantity) {
         validateProduct(name, price, quantity);
         
         Product product = new Product(name, description, price, quantity);
-        return productDAO.create(product);
+        Product created = productDAO.create(product);
+        afterWrite(created);
+        inventoryStats.change(null, null, created.getPrice(), created.getQuantity());
+        changeFeed.publish(ProductChangeFeed.Type.CREATED, created.getId(), created);
+        return created;
     }
     
     public Optional<Product> getProductById(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("L'ID du produit doit être positif");
         }
-        return productDAO.findById(id);
+        return productCache.get(id, productDAO::findById);
     }
     
     public List<Product> getAllProducts() {
         return productDAO.findAll();
     }
     
+    /**
+     * Catalogue complet limité aux champs demandés (projection JPQL, pas d'entités gérées)
+     */
+    public List<Map<String, Object>> getAllProducts(ProductFields fields) {
+        return productDAO.findAllFields(fields);
+    }
+    
+    /**
+     * Produit limité aux champs demandés : projeté depuis le cache s'il est actif, sinon projection JPQL
+     */
+    public Optional<Map<String, Object>> getProductById(Long id, ProductFields fields) {
+        if (productCache.isEnabled()) {
+            return getProductById(id).map(fields::project);
+        }
+        if (id == null || id <= 0) {
+            throw new IllegalArgumentException("L'ID du produit doit être positif");
+        }
+        return productDAO.findFieldsById(id, fields);
+    }
+    
+    /**
+     * Export complet en streaming : chaque produit est transmis au consommateur dès sa lecture
+     */
+    public long streamAllProducts(Consumer<Product> consumer) {
+        return productDAO.streamAll(consumer);
+    }
+    
+    /**
+     * Retourne une page de produits triés par ID, après le curseur {@code afterId}.
+     * Une ligne supplémentaire est lue pour savoir s'il existe une page suivante.
+     */
+    public ProductPage<Product> getProductsPage(long afterId, int limit) {
+        validatePage(afterId, limit);
+        List<Product> rows = productDAO.findPage(afterId, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<Product> items = hasMore ? rows.subList(0, limit) : rows;
+        Long lastId = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new ProductPage<>(items, lastId);
+    }
+    
+    /**
+     * Page limitée aux champs demandés (l'id est toujours projeté : il sert de curseur)
+     */
+    public ProductPage<Map<String, Object>> getProductsPage(long afterId, int limit, ProductFields fields) {
+        validatePage(afterId, limit);
+        List<Map<String, Object>> rows = productDAO.findPageFields(afterId, limit + 1, fields);
+        boolean hasMore = rows.size() > limit;
+        List<Map<String, Object>> items = hasMore ? rows.subList(0, limit) : rows;
+        Long lastId = hasMore ? (Long) items.get(items.size() - 1).get("id") : null;
+        return new ProductPage<>(items, lastId);
+    }
+    
+    /**
+     * Produits filtrés et triés (voir ProductQuery) : tout le résultat, sans pagination (?all=true)
+     */
+    public List<Product> getAllProducts(ProductQuery query) {
+        return productDAO.findFiltered(query, 0);
+    }
+    
+    public List<Map<String, Object>> getAllProducts(ProductQuery query, ProductFields fields) {
+        return productDAO.findFilteredFields(query, 0, fields);
+    }
+    
+    /**
+     * Page de produits filtrés et triés, après le curseur porté par {@code query}.
+     * Le dernier ID et la dernière valeur du champ de tri forment le curseur de la page suivante.
+     */
+    public ProductPage<Product> getProductsPage(ProductQuery query, int limit) {
+        validatePage(0, limit);
+        List<Product> rows = productDAO.findFiltered(query, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<Product> items = hasMore ? rows.subList(0, limit) : rows;
+        if (!hasMore) {
+            return new ProductPage<>(items, null);
+        }
+        Product last = items.get(items.size() - 1);
+        return new ProductPage<>(items, last.getId(), query.sortValue(last));
+    }
+    
+    /**
+     * Page filtrée et triée limitée aux champs demandés (id et champ de tri toujours projetés : ils forment le curseur)
+     */
+    public ProductPage<Map<String, Object>> getProductsPage(ProductQuery query, int limit, ProductFields fields) {
+        validatePage(0, limit);
+        List<Map<String, Object>> rows = productDAO.findFilteredFields(query, limit + 1,
+            fields.including(query.sortAttribute()));
+        boolean hasMore = rows.size() > limit;
+        List<Map<String, Object>> items = hasMore ? rows.subList(0, limit) : rows;
+        if (!hasMore) {
+            return new ProductPage<>(items, null);
+        }
+        Map<String, Object> last = items.get(items.size() - 1);
+        return new ProductPage<>(items, (Long) last.get("id"), last.get(query.sortAttribute()));
+    }
+    
+    /**
+     * Synchronisation différentielle possible : tous les produits ont un updated_at. Avant le backfill de la
+     * migration 011, un produit à updated_at NULL ne correspondrait à aucun watermark et le client le manquerait.
+     */
+    public boolean isChangeSyncReady() {
+        if (changeSyncReady) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - changeSyncCheckedAt >= CHANGE_SYNC_CHECK_INTERVAL_MS) {
+            changeSyncCheckedAt = now;
+            changeSyncReady = !productDAO.hasProductsWithoutUpdatedAt();
+            if (!changeSyncReady) {
+                System.err.println("⚠️  Synchronisation différentielle indisponible : produits sans updated_at"
+                    + " (appliquer la migration 011 avec DBMigrate)");
+            }
+        }
+        return changeSyncReady;
+    }
+    
+    /**
+     * Début d'une synchronisation différentielle (horloge de la base, voir ProductDAO.changeSyncHorizon) :
+     * watermark renvoyé au client sur la dernière page
+     */
+    public LocalDateTime getChangeSyncStart() {
+        return productDAO.changeSyncHorizon();
+    }
+    
+    /**
+     * Synchronisation différentielle : produits créés / modifiés (updated_at) et supprimés (product_tombstones)
+     * à partir de {@code since}, fusionnés dans l'ordre (horodatage, id) et repris après ({@code afterTimestamp},
+     * {@code afterId}). Au plus {@code limit} lignes au total ; lastTimestamp / lastId null sur la dernière page.
+     */
+    public ChangesPage getChangesSince(LocalDateTime since, LocalDateTime afterTimestamp, Long afterId, int limit) {
+        validatePage(0, limit);
+        ProductQuery query = ProductQuery.changedSince(since);
+        if (afterTimestamp != null && afterId != null) {
+            query = query.after(afterId, afterTimestamp.toString());
+        }
+        List<Product> products = productDAO.findFiltered(query, limit + 1);
+        List<ProductTombstone> tombstones = productDAO.findTombstonesSince(since, afterTimestamp, afterId, limit + 1);
+
+        // Fusion des deux listes triées : les lignes au-delà de limit seront relues à la page suivante
+        List<Product> changed = new ArrayList<>();
+        List<ProductTombstone> deleted = new ArrayList<>();
+        int p = 0;
+        int t = 0;
+        LocalDateTime lastTimestamp = null;
+        Long lastId = null;
+        while (changed.size() + deleted.size() < limit && (p < products.size() || t < tombstones.size())) {
+            boolean takeProduct = t >= tombstones.size() || (p < products.size()
+                && compare(products.get(p).getUpdatedAt(), products.get(p).getId(),
+                           tombstones.get(t).getDeletedAt(), tombstones.get(t).getProductId()) <= 0);
+            if (takeProduct) {
+                Product product = products.get(p++);
+                changed.add(product);
+                lastTimestamp = product.getUpdatedAt();
+                lastId = product.getId();
+            } else {
+                ProductTombstone tombstone = tombstones.get(t++);
+                deleted.add(tombstone);
+                lastTimestamp = tombstone.getDeletedAt();
+                lastId = tombstone.getProductId();
+            }
+        }
+        boolean hasMore = p < products.size() || t < tombstones.size();
+        return hasMore
+            ? new ChangesPage(changed, deleted, lastTimestamp, lastId)
+            : new ChangesPage(changed, deleted, null, null);
+    }
+    
+    private static int compare(LocalDateTime timestamp, Long id, LocalDateTime otherTimestamp, Long otherId) {
+        int byTimestamp = timestamp.compareTo(otherTimestamp);
+        return byTimestamp != 0 ? byTimestamp : id.compareTo(otherId);
+    }
+    
+    private static void validatePage(long afterId, int limit) {
+        if (afterId < 0) {
+            throw new IllegalArgumentException("Le curseur doit être positif");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("La taille de page doit être positive");
+        }
+    }
+    
     public List<Product> searchProductsByName(String name) {
+        return searchProductsByName(name, DEFAULT_SEARCH_LIMIT);
+    }
+    
+    /**
+     * Recherche par nom, résultats triés par pertinence et limités à {@code limit}
+     */
+    public List<Product> searchProductsByName(String name, int limit) {
+        validateSearch(name, limit);
+        if (searchIndexReady) {
+            return hydrate(searchIndex.search(name, limit));
+        }
+        return productDAO.findByName(name.trim(), limit);
+    }
+    
+    public List<Map<String, Object>> searchProductsByName(String name, ProductFields fields) {
+        return searchProductsByName(name, DEFAULT_SEARCH_LIMIT, fields);
+    }
+    
+    /**
+     * Recherche limitée aux champs demandés (projection JPQL, ou projection des résultats de l'index en mémoire)
+     */
+    public List<Map<String, Object>> searchProductsByName(String name, int limit, ProductFields fields) {
+        validateSearch(name, limit);
+        if (searchIndexReady) {
+            return fields.project(hydrate(searchIndex.search(name, limit)));
+        }
+        return productDAO.findByNameFields(name.trim(), limit, fields);
+    }
+    
+    /**
+     * Produits des IDs trouvés par l'index en mémoire, dans le même ordre : cache produits, puis une requête IN
+     * pour les absents. Un produit supprimé entre-temps est omis.
+     */
+    private List<Product> hydrate(List<Long> ids) {
+        Map<Long, Product> products = productCache.getAll(ids, this::loadByIds);
+        List<Product> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = products.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+    
+    private Map<Long, Product> loadByIds(Set<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productDAO.findByIds(ids)) {
+            products.put(product.getId(), product);
+        }
+        return products;
+    }
+    
+    private static void validateSearch(String name, int limit) {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Le nom de recherche ne peut pas être vide");
         }
-        return productDAO.findByName(name);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("La limite de recherche doit être positive");
+        }
     }
     
     public Product updateProduct(Long id, String name, String description, BigDecimal price, Integer quantity) {
+        return updateProduct(id, name, description, price, quantity, null);
+    }
+    
+    /**
+     * Mise à jour complète avec verrouillage optimiste.
+     * - {@code expectedVersion} fourni : la mise à jour échoue (OptimisticLockException) si le produit a changé
+     * - sinon : en cas de conflit, relecture et nouvelle tentative (au plus PRODUCT_UPDATE_MAX_RETRIES fois)
+     */
+    public Product updateProduct(Long id, String name, String description, BigDecimal price, Integer quantity,
+                                 Long expectedVersion) {
         validateProduct(name, price, quantity);
+        releaseStockReservation(id);
         
-        Optional<Product> existingProduct = productDAO.findById(id);
-        if (existingProduct.isEmpty()) {
-            throw new IllegalArgumentException("Produit non trouvé avec l'ID: " + id);
+        for (int attempt = 1; ; attempt++) {
+            Optional<Product> existingProduct = productDAO.findById(id);
+            if (existingProduct.isEmpty()) {
+                throw new IllegalArgumentException("Produit non trouvé avec l'ID: " + id);
+            }
+            
+            Product product = existingProduct.get();
+            if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+                throw new OptimisticLockException("Le produit " + id + " a été modifié (version actuelle: "
+                    + product.getVersion() + ")");
+            }
+            BigDecimal previousPrice = product.getPrice();
+            Integer previousQuantity = product.getQuantity();
+            product.setName(name);
+            product.setDescription(description);
+            product.setPrice(price);
+            product.setQuantity(quantity);
+            
+            try {
+                Product updated = productDAO.update(product);
+                afterWrite(updated);
+                inventoryStats.change(previousPrice, previousQuantity, updated.getPrice(), updated.getQuantity());
+                changeFeed.publish(ProductChangeFeed.Type.UPDATED, updated.getId(), updated);
+                return updated;
+            } catch (OptimisticLockException e) {
+                // Conflit de version : rien n'a été écrit, seul le cache est à invalider
+                productCache.invalidate(id);
+                if (expectedVersion != null || attempt >= UPDATE_MAX_RETRIES) {
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                afterFailedWrite(id);
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Exécute un lot de créations / mises à jour / suppressions dans une seule transaction.
+     * Tout le lot est validé avant d'écrire ; un même ID ne peut être modifié qu'une fois par lot.
+     * Retourne le produit résultant de chaque opération (null pour une suppression).
+     */
+    public List<Product> executeBatch(List<ProductDAO.BatchOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("Le batch ne contient aucune opération");
+        }
+        if (operations.size() > BATCH_MAX_OPERATIONS) {
+            throw new IllegalArgumentException("Le batch dépasse " + BATCH_MAX_OPERATIONS + " opérations");
         }
         
-        Product product = existingProduct.get();
-        product.setName(name);
-        product.setDescription(description);
-        product.setPrice(price);
-        product.setQuantity(quantity);
+        Set<Long> touchedIds = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            ProductDAO.BatchOperation operation = operations.get(i);
+            if (operation == null || operation.type == null) {
+                throw new BatchValidationException(i, "type d'opération manquant");
+            }
+            if (operation.type != ProductDAO.BatchOperation.Type.DELETE) {
+                Product product = operation.product;
+                if (product == null) {
+                    throw new BatchValidationException(i, "produit manquant");
+                }
+                try {
+                    validateProduct(product.getName(), product.getPrice(), product.getQuantity());
+                } catch (IllegalArgumentException e) {
+                    throw new BatchValidationException(i, e.getMessage());
+                }
+            }
+            if (operation.type != ProductDAO.BatchOperation.Type.CREATE) {
+                if (operation.id == null || operation.id <= 0) {
+                    throw new BatchValidationException(i, "l'ID du produit doit être positif");
+                }
+                if (!touchedIds.add(operation.id)) {
+                    throw new BatchValidationException(i, "l'ID " + operation.id + " apparaît plusieurs fois");
+                }
+            }
+        }
+        touchedIds.forEach(this::releaseStockReservation);
         
-        return productDAO.update(product);
+        List<Product> results;
+        try {
+            results = productDAO.executeBatch(operations);
+        } catch (RuntimeException e) {
+            afterFailedWrite(touchedIds);
+            throw e;
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            ProductDAO.BatchOperation operation = operations.get(i);
+            Product result = results.get(i);
+            if (result != null) {
+                afterWrite(result);
+                changeFeed.publish(operation.type == ProductDAO.BatchOperation.Type.CREATE
+                    ? ProductChangeFeed.Type.CREATED : ProductChangeFeed.Type.UPDATED, result.getId(), result);
+            } else {
+                afterDelete(operation.id);
+                changeFeed.publish(ProductChangeFeed.Type.DELETED, operation.id, null);
+            }
+            inventoryStats.change(operation.previousPrice, operation.previousQuantity,
+                result != null ? result.getPrice() : null, result != null ? result.getQuantity() : null);
+        }
+        return results;
     }
     
     public void deleteProduct(Long id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("L'ID du produit doit être positif");
         }
-        productDAO.delete(id);
+        releaseStockReservation(id);
+        try {
+            Optional<Product> deleted = productDAO.delete(id);
+            afterDelete(id);
+            deleted.ifPresent(product -> {
+                inventoryStats.change(product.getPrice(), product.getQuantity(), null, null);
+                changeFeed.publish(ProductChangeFeed.Type.DELETED, id, null);
+            });
+        } catch (RuntimeException e) {
+            afterFailedWrite(id);
+            throw e;
+        }
+    }
+    
+    /**
+     * Vérifie l'accès à la base (lève une exception si la base est injoignable)
+     */
+    public void checkDatabase() {
+        productDAO.ping();
     }
     
     public long getProductCount() {
         return productDAO.count();
     }
     
+    /**
+     * Statistiques d'inventaire servies depuis la mémoire (aucune requête SQL)
+     */
+    public InventoryStats.InventoryStatsResponse getInventoryStats() {
+        return inventoryStats.snapshot();
+    }
+    
+    public ProductCache.CacheStatsResponse getCacheStats() {
+        return productCache.stats();
+    }
+    
+    public Map<String, Object> getSecondLevelCacheStats() {
+        return HibernateUtil.getCacheStatistics();
+    }
+    
+    public Map<String, Object> getConnectionPoolStats() {
+        return HibernateUtil.getConnectionPoolStatistics();
+    }
+    
+    /**
+     * Ajustement du stock en une seule requête atomique (voir ProductDAO.adjustQuantity).
+     * Retourne false si le produit n'existe pas.
+     */
     public boolean updateStock(Long id, int quantityChange) {
+        if (stockWriteBehind != null) {
+            StockWriteBehind.Result result = stockWriteBehind.apply(id, quantityChange);
+            if (result == StockWriteBehind.Result.INSUFFICIENT) {
+                throw new IllegalArgumentException("Stock insuffisant. Quantité actuelle: " + stockWriteBehind.available(id));
+            }
+            if (result == StockWriteBehind.Result.OVERFLOW) {
+                throw new IllegalArgumentException("Stock maximal dépassé. Quantité actuelle: " + stockWriteBehind.available(id));
+            }
+            return result == StockWriteBehind.Result.APPLIED;
+        }
+        
+        try {
+            Optional<Product> updated = productDAO.adjustQuantity(id, quantityChange);
+            if (updated.isPresent()) {
+                Product product = updated.get();
+                afterWrite(product);
+                inventoryStats.quantityChanged(product.getPrice(), product.getQuantity() - quantityChange,
+                    product.getQuantity());
+                changeFeed.publish(ProductChangeFeed.Type.STOCK, product.getId(), product);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            afterFailedWrite(id);
+            throw e;
+        }
+        
+        // Aucune ligne modifiée : produit inexistant ou stock insuffisant
         Optional<Product> productOpt = productDAO.findById(id);
         if (productOpt.isEmpty()) {
+            afterDelete(id);
             return false;
         }
+        throw new IllegalArgumentException("Stock insuffisant. Quantité actuelle: " + productOpt.get().getQuantity());
+    }
+    
+    /**
+     * Produits modifiés par un autre réplica (bus d'invalidation, voir ProductInvalidationListener) :
+     * caches locaux, cache de second niveau, index de recherche, ETag des listes et flux SSE. Idempotent.
+     */
+    public void invalidateRemote(Collection<Long> ids) {
+        for (Long id : ids) {
+            releaseStockReservation(id);
+            productCache.invalidate(id);
+            HibernateUtil.evictFromSecondLevelCache(Product.class, id);
+            ProductSearchIndex index = searchIndexFor(id);
+            if (index != null) {
+                reindex(index, id);
+            }
+            productChanged(id);
+            // Seul l'ID est connu : les abonnés relisent le produit (404 s'il a été supprimé)
+            changeFeed.publish(ProductChangeFeed.Type.UPDATED, id, null);
+        }
+        HibernateUtil.evictQueryCache();
+        inventoryStats.requestReconciliation();
+    }
+    
+    /**
+     * Notifications perdues (reconnexion du bus) ou écriture massive sur un autre processus : tous les caches
+     * locaux sont vidés. L'index de recherche en mémoire est reconstruit à part puis échangé d'un bloc :
+     * les produits supprimés entre-temps en disparaissent, les recherches servent l'ancien index d'ici là.
+     */
+    public void invalidateAllLocal() {
+        productCache.invalidateAll();
+        HibernateUtil.evictAllCaches();
+        productChanged(null);
+        inventoryStats.requestReconciliation();
+        if (searchIndex != null && searchIndexReady) {
+            rebuildSearchIndex();
+        }
+    }
+    
+    /**
+     * Reconstruit l'index de recherche depuis la base et remplace l'index courant. Les écritures faites pendant
+     * la lecture (déjà passées ou non dans le flux) sont notées puis relues dans le nouvel index après l'échange.
+     */
+    private void rebuildSearchIndex() {
+        synchronized (searchIndexRebuildLock) {
+            Set<Long> changes = ConcurrentHashMap.newKeySet();
+            searchIndexRebuildChanges = changes;
+            ProductSearchIndex rebuilt = new ProductSearchIndex(searchIndexDescription);
+            try {
+                productDAO.streamAll(rebuilt::put);
+                searchIndex = rebuilt;
+            } finally {
+                searchIndexRebuildChanges = null;
+            }
+            for (Long id : changes) {
+                reindex(rebuilt, id);
+            }
+        }
+    }
+    
+    /**
+     * Index de recherche à mettre à jour pour une écriture sur {@code id} (null en mode SQL) ;
+     * l'écriture est notée si une reconstruction est en cours
+     */
+    private ProductSearchIndex searchIndexFor(Long id) {
+        Set<Long> changes = searchIndexRebuildChanges;
+        if (changes != null && id != null) {
+            changes.add(id);
+        }
+        return searchIndex;
+    }
+    
+    private void reindex(ProductSearchIndex index, Long id) {
+        Optional<Product> product = productDAO.findById(id);
+        if (product.isPresent()) {
+            index.put(product.get());
+        } else {
+            index.remove(id);
+        }
+    }
+    
+    /**
+     * Abonne un composant aux écritures (appelé après chaque écriture, réussie ou incertaine,
+     * avec l'ID du produit ou null si tout le catalogue est concerné)
+     */
+    public void addChangeListener(Consumer<Long> listener) {
+        changeListeners.add(listener);
+    }
+    
+    /**
+     * Journal des modifications (création, mise à jour, suppression, stock) faites par ce processus
+     */
+    public ProductChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+    
+    /**
+     * Version courante du catalogue (change après toute écriture faite par ce processus)
+     */
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+    
+    /**
+     * Révision des statistiques d'inventaire (change après toute écriture ou réconciliation)
+     */
+    public long getInventoryStatsRevision() {
+        return inventoryStats.revision();
+    }
+    
+    public Map<String, Object> getStockWriteBehindStats() {
+        return stockWriteBehind != null ? stockWriteBehind.stats() : Map.of("enabled", false);
+    }
+    
+    /**
+     * Avant un PUT/DELETE : écrire les variations de stock en attente et libérer la réservation
+     */
+    private void releaseStockReservation(Long id) {
+        if (stockWriteBehind != null && id != null) {
+            stockWriteBehind.release(id);
+        }
+    }
+    
+    /**
+     * Propagation d'une écriture réussie vers les structures en mémoire (cache, index)
+     */
+    private void afterWrite(Product product) {
+        // Une réservation recréée pendant l'écriture serait basée sur l'ancien stock : la libérer
+        releaseStockReservation(product.getId());
+        productCache.put(product);
+        ProductSearchIndex index = searchIndexFor(product.getId());
+        if (index != null) {
+            index.put(product);
+        }
+        productChanged(product.getId());
+    }
+    
+    private void afterDelete(Long id) {
+        releaseStockReservation(id);
+        productCache.invalidate(id);
+        ProductSearchIndex index = searchIndexFor(id);
+        if (index != null) {
+            index.remove(id);
+        }
+        productChanged(id);
+    }
+    
+    /**
+     * Écriture en échec : l'état en base est incertain, on invalide le cache, on relit l'entrée de l'index
+     * de recherche et on réconcilie les statistiques
+     */
+    private void afterFailedWrite(Long id) {
+        afterFailedWrite(List.of(id));
+    }
+    
+    private void afterFailedWrite(Collection<Long> ids) {
+        ProductSearchIndex index = null;
+        for (Long id : ids) {
+            productCache.invalidate(id);
+            index = searchIndexFor(id);
+            productChanged(id);
+        }
+        if (index != null && !ids.isEmpty()) {
+            try {
+                Map<Long, Product> current = loadByIds(Set.copyOf(ids));
+                for (Long id : ids) {
+                    Product product = current.get(id);
+                    if (product != null) {
+                        index.put(product);
+                    } else {
+                        index.remove(id);
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Base injoignable : l'entrée reste en l'état jusqu'à la prochaine écriture ou resynchronisation
+                System.err.println("Index de recherche non relu après une écriture en échec : " + e.getMessage());
+            }
+        }
+        inventoryStats.requestReconciliation();
+    }
+    
+    private void productChanged(Long id) {
+        catalogVersion.incrementAndGet();
+        for (Consumer<Long> listener : changeListeners) {
+            listener.accept(id);
+        }
+    }
+    
+    /**
+     * Page de résultats : produits (entités ou projections) + dernier ID lu (null si c'est la dernière page)
+     * et, pour une liste triée sur un autre champ, la valeur de ce champ sur la dernière ligne
+     */
+    public static class ProductPage<T> {
+        public final List<T> items;
+        public final Long lastId;
+        public final Object lastSortValue;
         
-        Product product = productOpt.get();
-        int newQuantity = product.getQuantity() + quantityChange;
+        public ProductPage(List<T> items, Long lastId) {
+            this(items, lastId, null);
+        }
         
-        if (newQuantity < 0) {
-            throw new IllegalArgumentException("Stock insuffisant. Quantité actuelle: " + product.getQuantity());
+        public ProductPage(List<T> items, Long lastId, Object lastSortValue) {
+            this.items = items;
+            this.lastId = lastId;
+            this.lastSortValue = lastSortValue;
         }
+    }
+    
+    /**
+     * Page de synchronisation différentielle : produits modifiés, traces de suppression et position de la
+     * dernière ligne lue (null si c'est la dernière page)
+     */
+    public static class ChangesPage {
+        public final List<Product> changed;
+        public final List<ProductTombstone> deleted;
+        public final LocalDateTime lastTimestamp;
+        public final Long lastId;
         
-        product.setQuantity(newQuantity);
-        productDAO.update(product);
-        return true;
+        public ChangesPage(List<Product> changed, List<ProductTombstone> deleted, LocalDateTime lastTimestamp, Long lastId) {
+            this.changed = changed;
+            this.deleted = deleted;
+            this.lastTimestamp = lastTimestamp;
+            this.lastId = lastId;
+        }
     }
     
     private void validateProduct(String name, BigDecimal price, Integer quantity) {
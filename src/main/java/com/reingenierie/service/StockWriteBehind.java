@@ -0,0 +1,347 @@
+package com.reingenierie.service;
+
+import com.reingenierie.dao.ProductDAO;
+import com.reingenierie.model.Product;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Écriture différée (write-behind) des variations de stock (STOCK_WRITE_BEHIND=true)
+ *
+ * Pour les produits très sollicités (ventes flash), chaque PATCH de stock n'ouvre plus de transaction :
+ * - la variation est validée contre un solde réservé en mémoire (initialisé depuis la base au premier accès)
+ * - elle est cumulée dans un accumulateur par produit (LongAdder, sans contention entre threads)
+ * - toutes les STOCK_FLUSH_INTERVAL_MS millisecondes, les cumuls sont écrits en base :
+ *   un UPDATE par produit, tous envoyés dans un seul batch JDBC et une seule transaction
+ *
+ * Sémantique en cas de crash :
+ * - une variation acquittée (200) mais pas encore flushée est PERDUE si le processus meurt brutalement
+ *   (fenêtre maximale : un intervalle de flush) ; l'arrêt propre (shutdown hook) flushe tout
+ * - un flush en échec est réessayé au tick suivant (les cumuls sont réinjectés)
+ * - le solde réservé suppose que le stock d'un produit n'est modifié que par ce pod pendant la fenêtre
+ *   (une seule réplique, ou routage par produit) : les PUT/DELETE locaux flushent et libèrent d'abord la réservation,
+ *   mais les écritures d'autres pods ne sont pas vues avant la libération de la réservation (inactivité)
+ * - les lectures (GET, cache) peuvent avoir jusqu'à un intervalle de flush de retard sur la quantité
+ * - le solde réservé reste dans les bornes de la colonne quantity (0 à Integer.MAX_VALUE) : un cumul en attente
+ *   est donc toujours écrivable, jamais un flush en échec permanent
+ */
+public class StockWriteBehind {
+
+    public enum Result { APPLIED, NOT_FOUND, INSUFFICIENT, OVERFLOW }
+
+    /**
+     * Notifié à chaque variation acceptée (solde réservé avant / après), ex. statistiques d'inventaire
+     */
+    public interface QuantityListener {
+        void quantityChanged(BigDecimal price, long before, long after);
+    }
+
+    private final ProductDAO productDAO;
+    private final Consumer<Set<Long>> onFlushed;
+    private final QuantityListener onApplied;
+    private final long idleEvictNanos;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    // Métriques
+    private final LongAdder appliedDeltas = new LongAdder();
+    private final LongAdder rejectedDeltas = new LongAdder();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile long lastFlushMicros = 0;
+    private volatile long maxFlushMicros = 0;
+
+    public StockWriteBehind(ProductDAO productDAO, long flushIntervalMs, long idleEvictMs, Consumer<Set<Long>> onFlushed,
+                            QuantityListener onApplied) {
+        this.productDAO = productDAO;
+        this.onFlushed = onFlushed;
+        this.onApplied = onApplied;
+        this.idleEvictNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictMs);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stock-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applique une variation au solde réservé ; l'écriture en base est différée
+     */
+    public Result apply(Long id, int delta) {
+        while (true) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                Optional<Product> product = productDAO.findById(id);
+                if (product.isEmpty()) {
+                    return Result.NOT_FOUND;
+                }
+                entry = entries.computeIfAbsent(id, key -> new Entry(product.get().getQuantity(), product.get().getPrice()));
+            }
+
+            if (!entry.enter()) {
+                // Réservation en cours de libération : attendre la fin puis recommencer avec une nouvelle
+                awaitUninterruptibly(entry.released);
+                continue;
+            }
+            try {
+                long current;
+                do {
+                    current = entry.available.get();
+                    if (current + delta < 0) {
+                        rejectedDeltas.increment();
+                        return Result.INSUFFICIENT;
+                    }
+                    if (current + delta > Integer.MAX_VALUE) {
+                        rejectedDeltas.increment();
+                        return Result.OVERFLOW;
+                    }
+                } while (!entry.available.compareAndSet(current, current + delta));
+                entry.pending.add(delta);
+                entry.lastTouchedNanos = System.nanoTime();
+                appliedDeltas.increment();
+                onApplied.quantityChanged(entry.price, current, current + delta);
+                return Result.APPLIED;
+            } finally {
+                entry.exit();
+            }
+        }
+    }
+
+    /**
+     * Solde réservé courant (null si le produit n'a pas de réservation)
+     */
+    public Long available(Long id) {
+        Entry entry = entries.get(id);
+        return entry != null ? entry.available.get() : null;
+    }
+
+    /**
+     * Flushe les variations en attente d'un produit et libère sa réservation
+     * (avant un PUT/DELETE, ou après inactivité). Le prochain accès relira la base.
+     * Les variations en cours sur ce produit sont attendues hors du verrou de flush : seule l'écriture le prend.
+     */
+    public void release(Long id) {
+        while (true) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return;
+            }
+            if (!entry.close()) {
+                // Libération déjà en cours dans un autre thread : attendre qu'elle aboutisse ou échoue
+                awaitUninterruptibly(entry.released);
+                continue;
+            }
+            awaitUninterruptibly(entry.drained);
+            flushLock.lock();
+            try {
+                long delta = entry.pending.sum();
+                if (delta != 0) {
+                    entry.pending.add(-delta);
+                    try {
+                        write(Map.of(id, delta));
+                    } catch (RuntimeException e) {
+                        entry.pending.add(delta);
+                        // Les variations restent réservées dans une nouvelle entrée, reprise par le prochain flush
+                        entries.replace(id, entry, entry.reopen());
+                        throw e;
+                    }
+                }
+                entries.remove(id, entry);
+            } finally {
+                flushLock.unlock();
+                entry.released.countDown();
+            }
+            return;
+        }
+    }
+
+    /**
+     * Écrit en base tous les cumuls en attente (un UPDATE par produit, un seul batch)
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Long> deltas = new HashMap<>();
+            Map<Long, Entry> taken = new HashMap<>();
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                long delta = e.getValue().pending.sum();
+                if (delta != 0) {
+                    // sum() puis add(-sum) : aucune variation concurrente n'est perdue
+                    e.getValue().pending.add(-delta);
+                    deltas.put(e.getKey(), delta);
+                    taken.put(e.getKey(), e.getValue());
+                }
+            }
+            if (!deltas.isEmpty()) {
+                try {
+                    write(deltas);
+                } catch (RuntimeException ex) {
+                    taken.forEach((id, entry) -> entry.pending.add(deltas.get(id)));
+                    throw ex;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+        releaseIdleEntries();
+    }
+
+    /**
+     * Arrêt propre : stoppe le flush périodique puis écrit les derniers cumuls
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public Map<String, Object> stats() {
+        long pending = entries.values().stream().filter(e -> e.pending.sum() != 0).count();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("reservedProducts", entries.size());
+        result.put("productsWithPendingDeltas", pending);
+        result.put("appliedDeltas", appliedDeltas.sum());
+        result.put("rejectedDeltas", rejectedDeltas.sum());
+        result.put("flushes", flushes.get());
+        result.put("flushedRows", flushedRows.get());
+        result.put("flushFailures", flushFailures.get());
+        result.put("lastFlushMicros", lastFlushMicros);
+        result.put("maxFlushMicros", maxFlushMicros);
+        return result;
+    }
+
+    private void write(Map<Long, Long> deltas) {
+        long start = System.nanoTime();
+        try {
+            productDAO.applyQuantityDeltas(deltas);
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            throw e;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        lastFlushMicros = micros;
+        maxFlushMicros = Math.max(maxFlushMicros, micros);
+        flushes.incrementAndGet();
+        flushedRows.addAndGet(deltas.size());
+        onFlushed.accept(deltas.keySet());
+    }
+
+    private void releaseIdleEntries() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (now - entry.lastTouchedNanos > idleEvictNanos && entry.pending.sum() == 0) {
+                release(e.getKey());
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Échec du flush des variations de stock (nouvelle tentative au prochain tick): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Réservation d'un produit : solde disponible + cumul des variations non écrites
+     */
+    private static final class Entry {
+        final AtomicLong available;
+        // Prix lu avec le solde initial : un PUT libère la réservation avant de changer le prix
+        final BigDecimal price;
+        final LongAdder pending = new LongAdder();
+        // Variations en cours (entre enter et exit) ; drained s'ouvre quand il n'en reste plus après close
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean();
+        final CountDownLatch drained = new CountDownLatch(1);
+        // Ouvert quand la libération se termine, réussie ou non
+        final CountDownLatch released = new CountDownLatch(1);
+        volatile long lastTouchedNanos = System.nanoTime();
+
+        Entry(long available, BigDecimal price) {
+            this.available = new AtomicLong(available);
+            this.price = price;
+        }
+
+        /**
+         * Début d'une variation ; false si la réservation est en cours de libération
+         */
+        boolean enter() {
+            inFlight.incrementAndGet();
+            if (closed.get()) {
+                exit();
+                return false;
+            }
+            return true;
+        }
+
+        void exit() {
+            if (inFlight.decrementAndGet() == 0 && closed.get()) {
+                drained.countDown();
+            }
+        }
+
+        /**
+         * Ferme la réservation aux nouvelles variations ; false si un autre thread l'a déjà fermée
+         */
+        boolean close() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            if (inFlight.get() == 0) {
+                drained.countDown();
+            }
+            return true;
+        }
+
+        /**
+         * Entrée ouverte reprenant le solde et les variations non écrites (libération en échec)
+         */
+        Entry reopen() {
+            Entry reopened = new Entry(available.get(), price);
+            reopened.pending.add(pending.sum());
+            reopened.lastTouchedNanos = lastTouchedNanos;
+            return reopened;
+        }
+    }
+}
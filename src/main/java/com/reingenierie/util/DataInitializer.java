@@ -23,7 +23,7 @@ public class DataInitializer {
      */
     public void initializeMockData() {
         // Vérifier si des données existent déjà
-        if (!productService.getAllProducts().isEmpty()) {
+        if (productService.getProductCount() > 0) {
             System.out.println("Des données existent déjà dans la base de données. Initialisation ignorée.");
             return;
         }
@@ -0,0 +1,57 @@
+package com.reingenierie.util;
+
+/**
+ * Lecture des variables d'environnement de configuration (12-Factor : III. Config)
+ * 
+ * Une propriété système de même nom (-DDB_URL=...) est utilisée si la variable d'environnement
+ * est absente : utile pour les benchmarks et outils qui tournent dans la même JVM.
+ */
+public final class EnvUtil {
+    
+    private EnvUtil() {
+    }
+    
+    /**
+     * Récupère une variable d'environnement (ou à défaut la propriété système de même nom)
+     * @param envName Nom de la variable d'environnement
+     * @param defaultValue Valeur par défaut si la variable n'existe pas
+     * @return La valeur de la variable d'environnement ou la valeur par défaut
+     */
+    public static String getEnv(String envName, String defaultValue) {
+        String value = System.getenv(envName);
+        if (value == null) {
+            value = System.getProperty(envName);
+        }
+        return value != null ? value : defaultValue;
+    }
+    
+    /**
+     * Récupère une variable d'environnement booléenne ("true"/"false", insensible à la casse)
+     */
+    public static boolean getEnvAsBoolean(String envName, boolean defaultValue) {
+        String value = getEnv(envName, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        return "true".equalsIgnoreCase(value.trim());
+    }
+    
+    /**
+     * Récupère une variable d'environnement en tant qu'entier avec une valeur par défaut
+     * @param envName Nom de la variable d'environnement
+     * @param defaultValue Valeur par défaut si la variable n'existe pas ou est invalide
+     * @return La valeur de la variable d'environnement ou la valeur par défaut
+     */
+    public static int getEnvAsInt(String envName, int defaultValue) {
+        String value = getEnv(envName, null);
+        if (value != null && !value.isEmpty()) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                System.err.println("Valeur invalide pour " + envName + ": " + value + 
+                                   ". Utilisation de la valeur par défaut: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -1,52 +1,133 @@
 package com.reingenierie.util;
 
+import com.mchange.v2.c3p0.PooledDataSource;
+import com.reingenierie.metrics.C3p0PoolGauges;
+import com.reingenierie.metrics.ConnectionPoolGauges;
+import com.reingenierie.metrics.ConnectionPoolMetrics;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 public class HibernateUtil {
     
     private static final EntityManagerFactory entityManagerFactory;
+    private static final boolean postgreSQL;
+    private static final int connectionPoolMaxSize;
+    // Pool HikariCP (null si DB_CONNECTION_POOL_PROVIDER=c3p0) et son instrumentation
+    private static final HikariDataSource dataSource;
+    private static final ConnectionPoolMetrics poolMetrics;
+    // Jauges du pool effectif (HikariCP ou c3p0), null si le pool c3p0 n'a pas pu être retrouvé
+    private static final ConnectionPoolGauges poolGauges;
+    // Paramètres de connexion, réutilisés pour les connexions hors pool (LISTEN)
+    private static final String jdbcUrl;
+    private static final String dbUser;
+    private static final String dbPassword;
+    
+    private static final String SEQUENCE_MISMATCH_MESSAGE =
+        "Le pas de la séquence products_id_seq ne correspond pas au mapping (allocationSize 50) : "
+        + "migration 006 non appliquée. Lancer DBMigrate (job productapp-db-migrate) avant les pods, "
+        + "ou démarrer avec DB_SEQUENCE_MISMATCH_STRATEGY=fix (allocationSize réduit à 1 : un nextval par INSERT).";
     
     static {
         EntityManagerFactory tempFactory = null;
+        HikariDataSource tempDataSource = null;
         
         // Configuration du retry logic depuis variables d'environnement
-        int maxRetries = getEnvAsInt("DB_MAX_RETRIES", 10);
-        int retryDelay = getEnvAsInt("DB_RETRY_DELAY_MS", 5000); // millisecondes
+        int maxRetries = EnvUtil.getEnvAsInt("DB_MAX_RETRIES", 10);
+        int retryDelay = EnvUtil.getEnvAsInt("DB_RETRY_DELAY_MS", 5000); // millisecondes
         
         // Récupérer les variables d'environnement pour la configuration de la DB
-        Map<String, String> props = new HashMap<>();
+        Map<String, Object> props = new HashMap<>();
         
-        String dbHost = System.getenv().getOrDefault("DB_HOST", "localhost");
-        String dbPort = System.getenv().getOrDefault("DB_PORT", "5432");
-        String dbName = System.getenv().getOrDefault("DB_NAME", "productdb");
-        String dbUser = System.getenv().getOrDefault("DB_USER", "postgres");
-        String dbPassword = System.getenv().getOrDefault("DB_PASSWORD", "postgres");
+        String dbHost = EnvUtil.getEnv("DB_HOST", "localhost");
+        String dbPort = EnvUtil.getEnv("DB_PORT", "5432");
+        String dbName = EnvUtil.getEnv("DB_NAME", "productdb");
+        dbUser = EnvUtil.getEnv("DB_USER", "postgres");
+        dbPassword = EnvUtil.getEnv("DB_PASSWORD", "postgres");
         
-        String jdbcUrl = String.format("jdbc:postgresql://%s:%s/%s", dbHost, dbPort, dbName);
+        // reWriteBatchedInserts : PgJDBC réécrit les batchs d'INSERT en INSERT multi-lignes
+        // DB_URL (optionnelle) remplace l'URL PostgreSQL, ex : H2 en mémoire pour les benchmarks
+        jdbcUrl = EnvUtil.getEnv("DB_URL",
+            String.format("jdbc:postgresql://%s:%s/%s?reWriteBatchedInserts=true", dbHost, dbPort, dbName));
+        postgreSQL = jdbcUrl.startsWith("jdbc:postgresql:");
         
         // Configuration du pool de connexions (externalise via variables d'environnement)
-        int connectionPoolSize = getEnvAsInt("DB_CONNECTION_POOL_SIZE", 10);
-        int connectionPoolMinSize = getEnvAsInt("DB_CONNECTION_POOL_MIN_SIZE", 5);
-        int connectionPoolMaxSize = getEnvAsInt("DB_CONNECTION_POOL_MAX_SIZE", 20);
-        int connectionTimeout = getEnvAsInt("DB_CONNECTION_TIMEOUT", 30000); // 30 secondes
+        // DB_CONNECTION_POOL_PROVIDER : c3p0 (défaut) ou hikari (sur option, instrumenté : attente, saturation)
+        String poolProvider = EnvUtil.getEnv("DB_CONNECTION_POOL_PROVIDER", "c3p0").trim().toLowerCase(Locale.ROOT);
+        boolean hikari = "hikari".equals(poolProvider);
+        int connectionPoolSize = EnvUtil.getEnvAsInt("DB_CONNECTION_POOL_SIZE", 10);
+        int connectionPoolMinSize = EnvUtil.getEnvAsInt("DB_CONNECTION_POOL_MIN_SIZE", 5);
+        connectionPoolMaxSize = EnvUtil.getEnvAsInt("DB_CONNECTION_POOL_MAX_SIZE", 20);
+        int connectionTimeout = EnvUtil.getEnvAsInt("DB_CONNECTION_TIMEOUT", 30000); // 30 secondes, en millisecondes
+        int jdbcBatchSize = EnvUtil.getEnvAsInt("DB_JDBC_BATCH_SIZE", 50);
+        
+        // Configuration du cache de second niveau (externalise via variables d'environnement)
+        boolean secondLevelCacheEnabled = EnvUtil.getEnvAsBoolean("DB_CACHE_ENABLED", true);
+        int cacheMaxEntries = EnvUtil.getEnvAsInt("DB_CACHE_MAX_ENTRIES", 10000);
+        int cacheTtlSeconds = EnvUtil.getEnvAsInt("DB_CACHE_TTL_SECONDS", 300);
+        boolean statisticsEnabled = EnvUtil.getEnvAsBoolean("DB_STATISTICS_ENABLED", true);
+        String showSql = String.valueOf(EnvUtil.getEnvAsBoolean("DB_SHOW_SQL", true));
         
-        // Forcer PostgreSQL
-        props.put("jakarta.persistence.jdbc.driver", "org.postgresql.Driver");
-        props.put("jakarta.persistence.jdbc.url", jdbcUrl);
-        props.put("jakarta.persistence.jdbc.user", dbUser);
-        props.put("jakarta.persistence.jdbc.password", dbPassword);
-        props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        // Forcer PostgreSQL (sinon driver et dialecte détectés depuis DB_URL)
+        if (postgreSQL) {
+            props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        }
+        props.put("hibernate.show_sql", showSql);
+        props.put("hibernate.format_sql", showSql);
         
         // Configuration du pool de connexions
-        props.put("hibernate.connection.pool_size", String.valueOf(connectionPoolSize));
-        props.put("hibernate.c3p0.min_size", String.valueOf(connectionPoolMinSize));
-        props.put("hibernate.c3p0.max_size", String.valueOf(connectionPoolMaxSize));
-        props.put("hibernate.c3p0.timeout", String.valueOf(connectionTimeout));
-        props.put("hibernate.c3p0.max_statements", "50");
+        poolMetrics = hikari ? new ConnectionPoolMetrics() : null;
+        if (!hikari) {
+            // c3p0 : connexions ouvertes par Hibernate à partir des propriétés JDBC
+            if (postgreSQL) {
+                props.put("jakarta.persistence.jdbc.driver", "org.postgresql.Driver");
+            }
+            props.put("jakarta.persistence.jdbc.url", jdbcUrl);
+            props.put("jakarta.persistence.jdbc.user", dbUser);
+            props.put("jakarta.persistence.jdbc.password", dbPassword);
+            props.put("hibernate.connection.pool_size", String.valueOf(connectionPoolSize));
+            props.put("hibernate.c3p0.min_size", String.valueOf(connectionPoolMinSize));
+            props.put("hibernate.c3p0.max_size", String.valueOf(connectionPoolMaxSize));
+            // hibernate.c3p0.timeout (inactivité avant fermeture) est en secondes, DB_CONNECTION_TIMEOUT en millisecondes
+            props.put("hibernate.c3p0.timeout", String.valueOf(Math.max(1, connectionTimeout / 1000)));
+            props.put("hibernate.c3p0.max_statements", "50");
+        }
+        
+        // Batching JDBC des écritures (INSERT/UPDATE/DELETE regroupés et triés par entité)
+        props.put("hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        props.put("hibernate.jdbc.batch_versioned_data", "true");
+        // Séquence products_id_seq dont le pas n'est pas 50 (migration 006 non appliquée) : échec au démarrage
+        // plutôt qu'un allocationSize réduit en silence (plus de batch JDBC des INSERT).
+        // DBMigrate passe en "fix" le temps d'appliquer 006.
+        props.put("hibernate.id.sequence.increment_size_mismatch_strategy",
+            EnvUtil.getEnv("DB_SEQUENCE_MISMATCH_STRATEGY", "exception"));
+        
+        // Cache de second niveau (entités) et cache de requêtes, région JCache locale (Caffeine)
+        props.put("hibernate.cache.use_second_level_cache", String.valueOf(secondLevelCacheEnabled));
+        props.put("hibernate.cache.use_query_cache", String.valueOf(secondLevelCacheEnabled));
+        props.put("hibernate.cache.region.factory_class", "jcache");
+        props.put("hibernate.javax.cache.provider", "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider");
+        props.put("hibernate.javax.cache.missing_cache_strategy", "create");
+        props.put("hibernate.generate_statistics", String.valueOf(statisticsEnabled));
+        // Dimensionnement des régions créées à la volée (configuration Caffeine JCache par défaut)
+        System.setProperty("caffeine.jcache.default.policy.maximum.size", String.valueOf(cacheMaxEntries));
+        System.setProperty("caffeine.jcache.default.policy.eager-expiration.after-write", cacheTtlSeconds + "s");
         
         System.out.println("========================================");
         System.out.println("Configuration Base de Données:");
@@ -56,10 +137,17 @@ public class HibernateUtil {
         System.out.println("  User: " + dbUser);
         System.out.println("  JDBC URL: " + jdbcUrl);
         System.out.println("Configuration Connection Pool:");
-        System.out.println("  Pool Size: " + connectionPoolSize);
+        System.out.println("  Provider: " + (hikari ? "hikari" : "c3p0"));
+        System.out.println("  Pool Size: " + connectionPoolSize + (hikari ? " (c3p0 uniquement)" : ""));
         System.out.println("  Min Size: " + connectionPoolMinSize);
         System.out.println("  Max Size: " + connectionPoolMaxSize);
         System.out.println("  Timeout: " + connectionTimeout + "ms");
+        System.out.println("  JDBC Batch Size: " + jdbcBatchSize);
+        System.out.println("Configuration Cache L2:");
+        System.out.println("  Enabled: " + secondLevelCacheEnabled);
+        System.out.println("  Max Entries/Region: " + cacheMaxEntries);
+        System.out.println("  TTL: " + cacheTtlSeconds + "s");
+        System.out.println("  Statistics: " + statisticsEnabled);
         System.out.println("Configuration Retry:");
         System.out.println("  Max Retries: " + maxRetries);
         System.out.println("  Retry Delay: " + retryDelay + "ms");
@@ -69,11 +157,24 @@ public class HibernateUtil {
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
             try {
                 System.out.println("Tentative de connexion " + attempt + "/" + maxRetries + "...");
+                if (hikari) {
+                    tempDataSource = createHikariDataSource(jdbcUrl, dbUser, dbPassword,
+                        connectionPoolMinSize, connectionPoolMaxSize, connectionTimeout);
+                    props.put("hibernate.connection.datasource", tempDataSource);
+                }
                 tempFactory = Persistence.createEntityManagerFactory("webapp-demo-pu", props);
                 System.out.println("✓ EntityManagerFactory créé avec succès");
                 break;
             } catch (Exception ex) {
                 System.err.println("Échec tentative " + attempt + ": " + ex.getMessage());
+                if (isSequenceMismatch(ex)) {
+                    // Nouvelle tentative utile si le job DBMigrate est en cours ; sinon le message final le dit clairement
+                    System.err.println(SEQUENCE_MISMATCH_MESSAGE);
+                }
+                if (tempDataSource != null) {
+                    tempDataSource.close();
+                    tempDataSource = null;
+                }
                 if (attempt < maxRetries) {
                     try {
                         System.out.println("Attente de " + (retryDelay/1000) + "s avant nouvelle tentative...");
@@ -84,40 +185,194 @@ public class HibernateUtil {
                     }
                 } else {
                     System.err.println("Échec après " + maxRetries + " tentatives");
-                    throw new ExceptionInInitializerError(ex);
+                    throw new ExceptionInInitializerError(isSequenceMismatch(ex)
+                        ? new IllegalStateException(SEQUENCE_MISMATCH_MESSAGE, ex) : ex);
                 }
             }
         }
         
         entityManagerFactory = tempFactory;
+        dataSource = tempDataSource;
+        if (dataSource != null) {
+            poolMetrics.bind(dataSource);
+            poolGauges = poolMetrics;
+        } else {
+            poolGauges = c3p0Gauges(entityManagerFactory);
+        }
+    }
+    
+    /**
+     * Échec de démarrage dû à increment_size_mismatch_strategy=exception : le pas de products_id_seq
+     * ne correspond pas à l'allocationSize de Product (MappingException Hibernate "The increment size of the [...] sequence")
+     */
+    private static boolean isSequenceMismatch(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.contains("increment size")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Pool HikariCP alimenté par les mêmes variables DB_CONNECTION_POOL_* que c3p0 :
+     * MAX_SIZE = taille maximale, MIN_SIZE = connexions inactives conservées, DB_CONNECTION_TIMEOUT = attente maximale.
+     * Pas de cache de statements côté pool (max_statements de c3p0) : PgJDBC prépare lui-même côté serveur
+     * les requêtes réutilisées (prepareThreshold).
+     */
+    private static HikariDataSource createHikariDataSource(String jdbcUrl, String user, String password,
+                                                           int minIdle, int maxSize, int connectionTimeoutMs) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("productapp-pool");
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(user);
+        config.setPassword(password);
+        if (postgreSQL) {
+            config.setDriverClassName("org.postgresql.Driver");
+        }
+        config.setMaximumPoolSize(maxSize);
+        config.setMinimumIdle(Math.min(minIdle, maxSize));
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setMetricsTrackerFactory(poolMetrics);
+        return new HikariDataSource(config);
+    }
+    
+    /**
+     * Pool c3p0 créé par Hibernate (C3P0ConnectionProvider), retrouvé via le ConnectionProvider de la SessionFactory
+     */
+    private static ConnectionPoolGauges c3p0Gauges(EntityManagerFactory factory) {
+        try {
+            DataSource pooled = factory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                .getService(ConnectionProvider.class).unwrap(DataSource.class);
+            if (pooled instanceof PooledDataSource c3p0) {
+                return new C3p0PoolGauges(c3p0, connectionPoolMaxSize);
+            }
+        } catch (RuntimeException e) {
+            // UnknownUnwrapTypeException : ConnectionProvider autre que c3p0
+        }
+        System.err.println("⚠ Pool c3p0 introuvable : jauges du pool et contrôle de saturation de la readiness désactivés");
+        return null;
     }
     
     public static EntityManager getEntityManager() {
         return entityManagerFactory.createEntityManager();
     }
     
-    public static void shutdown() {
-        if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
-            entityManagerFactory.close();
-        }
+    /**
+     * Vrai si la base cible est PostgreSQL (requêtes natives spécifiques : pg_trgm, RETURNING...)
+     */
+    public static boolean isPostgreSQL() {
+        return postgreSQL;
     }
     
     /**
-     * Récupère une variable d'environnement en tant qu'entier avec une valeur par défaut
-     * @param envName Nom de la variable d'environnement
-     * @param defaultValue Valeur par défaut si la variable n'existe pas ou est invalide
-     * @return La valeur de la variable d'environnement ou la valeur par défaut
+     * Accès à la SessionFactory Hibernate native (StatelessSession, ScrollableResults...)
      */
-    private static int getEnvAsInt(String envName, int defaultValue) {
-        String value = System.getenv(envName);
-        if (value != null && !value.isEmpty()) {
-            try {
-                return Integer.parseInt(value);
-            } catch (NumberFormatException e) {
-                System.err.println("Valeur invalide pour " + envName + ": " + value + 
-                                   ". Utilisation de la valeur par défaut: " + defaultValue);
+    public static SessionFactory getSessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+    
+    /**
+     * Retire une entité du cache de second niveau (après une écriture SQL faite hors Hibernate)
+     */
+    public static void evictFromSecondLevelCache(Class<?> entityClass, Object id) {
+        entityManagerFactory.getCache().evict(entityClass, id);
+    }
+    
+    /**
+     * Vide le cache de requêtes (résultats périmés après une écriture faite par un autre processus)
+     */
+    public static void evictQueryCache() {
+        getSessionFactory().getCache().evictQueryRegions();
+    }
+    
+    /**
+     * Connexion JDBC dédiée, hors pool (même URL et identifiants) : pour une connexion ouverte en permanence
+     * (LISTEN) qui ne doit pas immobiliser une connexion du pool. À fermer par l'appelant.
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
+        return DriverManager.getConnection(jdbcUrl, dbUser, dbPassword);
+    }
+    
+    /**
+     * Vide le cache de second niveau et le cache de requêtes (après des écritures SQL massives hors Hibernate)
+     */
+    public static void evictAllCaches() {
+        entityManagerFactory.getCache().evictAll();
+        getSessionFactory().getCache().evictQueryRegions();
+    }
+    
+    /**
+     * Statistiques du cache de second niveau et du cache de requêtes (ratio de hits en production)
+     */
+    public static Map<String, Object> getCacheStatistics() {
+        Statistics stats = getSessionFactory().getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", stats.isStatisticsEnabled());
+        result.put("secondLevelHits", stats.getSecondLevelCacheHitCount());
+        result.put("secondLevelMisses", stats.getSecondLevelCacheMissCount());
+        result.put("secondLevelPuts", stats.getSecondLevelCachePutCount());
+        result.put("secondLevelHitRate", ratio(stats.getSecondLevelCacheHitCount(), stats.getSecondLevelCacheMissCount()));
+        result.put("queryCacheHits", stats.getQueryCacheHitCount());
+        result.put("queryCacheMisses", stats.getQueryCacheMissCount());
+        result.put("queryCachePuts", stats.getQueryCachePutCount());
+        result.put("queryCacheHitRate", ratio(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount()));
+        result.put("queryExecutions", stats.getQueryExecutionCount());
+        return result;
+    }
+    
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    /**
+     * Taille maximale du pool de connexions (DB_CONNECTION_POOL_MAX_SIZE)
+     */
+    public static int getConnectionPoolMaxSize() {
+        return connectionPoolMaxSize;
+    }
+    
+    /**
+     * Instrumentation du pool HikariCP (null avec DB_CONNECTION_POOL_PROVIDER=c3p0)
+     */
+    public static ConnectionPoolMetrics getConnectionPoolMetrics() {
+        return dataSource != null ? poolMetrics : null;
+    }
+    
+    /**
+     * Jauges du pool effectif, HikariCP ou c3p0 (null si le pool c3p0 n'a pas pu être retrouvé)
+     */
+    public static ConnectionPoolGauges getConnectionPoolGauges() {
+        return poolGauges;
+    }
+    
+    /**
+     * État du pool de connexions : actives, inactives, en attente, temps d'acquisition (HikariCP uniquement)
+     */
+    public static Map<String, Object> getConnectionPoolStatistics() {
+        if (dataSource == null) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("provider", "c3p0");
+            if (poolGauges instanceof C3p0PoolGauges c3p0) {
+                result.put("active", c3p0.activeConnections());
+                result.put("idle", c3p0.idleConnections());
+                result.put("pending", c3p0.pendingThreads());
             }
+            result.put("max", connectionPoolMaxSize);
+            return result;
+        }
+        return poolMetrics.snapshot();
+    }
+    
+    public static void shutdown() {
+        if (entityManagerFactory != null && entityManagerFactory.isOpen()) {
+            entityManagerFactory.close();
+        }
+        // La DataSource fournie à Hibernate n'est pas fermée par l'EntityManagerFactory
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
         }
-        return defaultValue;
     }
 }
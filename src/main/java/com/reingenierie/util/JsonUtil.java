@@ -0,0 +1,36 @@
+package com.reingenierie.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Configuration Jackson partagée (API REST, export, benchmarks)
+ */
+public final class JsonUtil {
+    
+    private JsonUtil() {
+    }
+    
+    /**
+     * ObjectMapper supportant LocalDateTime (Java 8 Date/Time), dates au format ISO-8601
+     */
+    public static ObjectMapper createObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+    
+    /**
+     * ObjectMapper pour un format binaire Jackson (CBOR, Smile...) : mêmes modules, mais dates écrites
+     * en valeurs numériques ([année, mois, jour, h, min, s, ns]) plutôt qu'en texte ISO-8601 à formater / analyser
+     */
+    public static ObjectMapper createObjectMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+}
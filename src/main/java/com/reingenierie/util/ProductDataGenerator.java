@@ -0,0 +1,82 @@
+package com.reingenierie.util;
+
+import com.reingenierie.model.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Générateur de produits synthétiques réalistes et reproductibles
+ *
+ * Le produit n°i ne dépend que de (seed, i) : la génération peut être découpée entre
+ * plusieurs threads dans n'importe quel ordre et produit toujours le même jeu de données.
+ */
+public class ProductDataGenerator {
+
+    private static final String[] BRANDS = {
+        "Dell", "Apple", "Sony", "Samsung", "Logitech", "Canon", "Bose", "Dyson", "Lenovo", "HP",
+        "Asus", "Acer", "Microsoft", "Nintendo", "GoPro", "Philips", "LG", "Xiaomi", "Garmin", "JBL"
+    };
+    private static final String[] TYPES = {
+        "Laptop", "Smartphone", "Casque", "Tablette", "Souris", "Clavier", "Appareil photo", "Enceinte",
+        "Aspirateur", "Écran", "Console", "Montre connectée", "Liseuse", "Caméra", "Imprimante", "Routeur"
+    };
+    private static final String[] SERIES = {
+        "Pro", "Air", "Max", "Ultra", "Lite", "Plus", "Mini", "Neo", "Elite", "Go"
+    };
+    private static final String[] FEATURES = {
+        "sans fil", "Bluetooth 5.3", "écran OLED", "autonomie 30h", "recharge rapide", "étanche IP68",
+        "réduction de bruit", "4K HDR", "Wi-Fi 6E", "processeur 8 cœurs", "USB-C", "stockage 512GB"
+    };
+    // Date de référence fixe : les dates générées ne dépendent pas de l'heure d'exécution
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final long CREATION_WINDOW_MINUTES = 2L * 365 * 24 * 60;
+
+    private final long seed;
+
+    public ProductDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Génère le produit d'index {@code index} (sans ID)
+     */
+    public Product generate(long index) {
+        SplittableRandom random = new SplittableRandom(mix(seed, index));
+
+        String brand = pick(random, BRANDS);
+        String type = pick(random, TYPES);
+        String name = brand + " " + type + " " + pick(random, SERIES) + " " + (100 + random.nextInt(900));
+
+        String description = type + " " + brand + " " + pick(random, FEATURES) + ", " + pick(random, FEATURES)
+            + ", " + pick(random, FEATURES) + ". Réf. " + Long.toHexString(mix(seed, index) & 0xFFFFFFL).toUpperCase();
+
+        // Prix log-uniforme entre 1 et 5000 € : beaucoup de petits prix, quelques produits chers
+        double logPrice = random.nextDouble(0, Math.log(5000));
+        BigDecimal price = BigDecimal.valueOf(Math.round(Math.exp(logPrice) * 100), 2);
+
+        // 10 % de produits en stock faible (< 5), le reste entre 5 et 500
+        int quantity = random.nextInt(10) == 0 ? random.nextInt(5) : 5 + random.nextInt(496);
+
+        Product product = new Product(name, description, price, quantity);
+        LocalDateTime createdAt = EPOCH.plusMinutes(random.nextLong(CREATION_WINDOW_MINUTES));
+        product.setCreatedAt(createdAt);
+        product.setUpdatedAt(createdAt);
+        return product;
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Mélange (seed, index) en une graine 64 bits bien distribuée (finaliseur SplitMix64)
+     */
+    private static long mix(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
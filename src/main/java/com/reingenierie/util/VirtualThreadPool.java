@@ -0,0 +1,70 @@
+package com.reingenierie.util;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de threads Jetty qui exécute chaque tâche sur un nouveau thread virtuel (HTTP_VIRTUAL_THREADS=true)
+ *
+ * N'implémente que l'interface ThreadPool, stable dans toutes les versions de Jetty : pas de dépendance
+ * aux réglages "virtual threads" de QueuedThreadPool, qui changent selon la version de Jetty 11 embarquée.
+ * Sélecteurs et handlers tournent tous sur des threads virtuels (même principe que LoomThreadPool de Javalin).
+ * Arrêté avec le serveur (bean géré par Server) : les tâches en cours se terminent, les nouvelles sont refusées.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private final ExecutorService executor;
+    private final AtomicInteger running = new AtomicInteger();
+
+    public VirtualThreadPool(String name) {
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            running.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdown();
+        super.doStop();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            // Serveur toujours démarré
+        }
+    }
+
+    /**
+     * Tâches en cours (un thread virtuel chacune)
+     */
+    @Override
+    public int getThreads() {
+        return running.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -0,0 +1,176 @@
+package com.reingenierie.controller;
+
+import com.reingenierie.dao.ProductQuery;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parties de ProductController testables sans serveur : comparaison d'ETags et curseurs de pagination
+ */
+class ProductControllerTest {
+
+    private static final String ETAG = "\"p-42-7\"";
+
+    @Test
+    void etagMatchesEtagIdentique() {
+        assertTrue(ProductController.etagMatches(ETAG, ETAG));
+    }
+
+    @Test
+    void etagMatchesListeEtJoker() {
+        assertTrue(ProductController.etagMatches("\"autre\", " + ETAG, ETAG));
+        assertTrue(ProductController.etagMatches("*", ETAG));
+    }
+
+    @Test
+    void etagMatchesIgnoreLePrefixeFaible() {
+        // nginx affaiblit l'ETag des réponses qu'il compresse
+        assertTrue(ProductController.etagMatches("W/" + ETAG, ETAG));
+    }
+
+    @Test
+    void etagMatchesVarianteGzip() {
+        String gzipEtag = EncodedResponseCache.gzipETag(ETAG);
+
+        assertEquals("\"p-42-7-gz\"", gzipEtag);
+        assertTrue(ProductController.etagMatches(gzipEtag, ETAG));
+        // Le 304 reprend l'ETag de la variante présentée par le client
+        assertEquals(gzipEtag, ProductController.matchingETag("\"autre\", W/" + gzipEtag, ETAG));
+        assertEquals(ETAG, ProductController.matchingETag(ETAG, ETAG));
+        assertFalse(ProductController.etagMatches(EncodedResponseCache.gzipETag("\"p-42-6\""), ETAG));
+    }
+
+    @Test
+    void etagMatchesRefuseLesAutresEtags() {
+        assertFalse(ProductController.etagMatches(null, ETAG));
+        assertFalse(ProductController.etagMatches("  ", ETAG));
+        assertFalse(ProductController.etagMatches("\"p-42-6\"", ETAG));
+        assertFalse(ProductController.etagMatches("p-42-7", ETAG));
+    }
+
+    @Test
+    void cursorAllerRetour() {
+        assertEquals(0L, ProductController.decodeCursor(ProductController.encodeCursor(0)));
+        assertEquals(12345L, ProductController.decodeCursor(ProductController.encodeCursor(12345)));
+        assertEquals(Long.MAX_VALUE, ProductController.decodeCursor(ProductController.encodeCursor(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void cursorAbsentPremierePage() {
+        assertEquals(0L, ProductController.decodeCursor(null));
+        assertEquals(0L, ProductController.decodeCursor(" "));
+    }
+
+    @Test
+    void cursorInvalideRefuse() {
+        assertThrows(IllegalArgumentException.class, () -> ProductController.decodeCursor("pas du base64 !"));
+        assertThrows(IllegalArgumentException.class, () -> ProductController.decodeCursor(
+            ProductController.encodeCursor(-1)));
+        assertThrows(IllegalArgumentException.class, () -> ProductController.decodeCursor(base64("id:douze")));
+        // Curseur d'une liste triée passé à la liste par ID
+        assertThrows(IllegalArgumentException.class, () -> ProductController.decodeCursor(base64("k:price:1:9.99")));
+    }
+
+    @Test
+    void keysetCursorAllerRetour() {
+        ProductQuery query = query(Map.of("minPrice", "10", "sort", "-price"));
+
+        ProductQuery next = ProductController.afterCursor(query,
+            ProductController.encodeCursor(query, 77, new BigDecimal("19.90")));
+
+        assertEquals(77L, next.afterId());
+        assertEquals(new BigDecimal("19.90"), next.afterValue());
+        assertEquals(query.toString(), next.toString());
+    }
+
+    @Test
+    void keysetCursorValeurAvecSeparateur() {
+        ProductQuery query = query(Map.of("sort", "name"));
+
+        ProductQuery next = ProductController.afterCursor(query, ProductController.encodeCursor(query, 5, "a:b|c"));
+
+        assertEquals(5L, next.afterId());
+        assertEquals("a:b|c", next.afterValue());
+    }
+
+    @Test
+    void keysetCursorDate() {
+        ProductQuery query = query(Map.of("sort", "createdAt"));
+        LocalDateTime createdAt = LocalDateTime.of(2025, 6, 1, 8, 30, 15, 123_000_000);
+
+        ProductQuery next = ProductController.afterCursor(query, ProductController.encodeCursor(query, 9, createdAt));
+
+        assertEquals(createdAt, next.afterValue());
+    }
+
+    @Test
+    void keysetCursorTriParIdReduitALId() {
+        ProductQuery query = query(Map.of("minPrice", "10"));
+
+        ProductQuery next = ProductController.afterCursor(query, ProductController.encodeCursor(31));
+
+        assertEquals(31L, next.afterId());
+    }
+
+    @Test
+    void keysetCursorRefusePourUnAutreTri() {
+        ProductQuery byPrice = query(Map.of("sort", "price"));
+        String cursor = ProductController.encodeCursor(byPrice, 1, new BigDecimal("9.99"));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.afterCursor(query(Map.of("sort", "-price")), cursor));
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.afterCursor(byPrice, base64("k:price:1:pas-un-prix")));
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.afterCursor(byPrice, base64("k:price:x:9.99")));
+    }
+
+    @Test
+    void syncCursorAllerRetour() {
+        LocalDateTime syncStart = LocalDateTime.of(2025, 6, 2, 8, 0, 0, 500_000);
+        LocalDateTime lastTimestamp = LocalDateTime.of(2025, 6, 1, 23, 59, 59);
+
+        ProductController.SyncCursor cursor = ProductController.decodeSyncCursor(
+            ProductController.encodeSyncCursor(syncStart, lastTimestamp, 4242));
+
+        assertEquals(syncStart, cursor.syncStart());
+        assertEquals(lastTimestamp, cursor.lastTimestamp());
+        assertEquals(4242L, cursor.lastId());
+    }
+
+    @Test
+    void syncCursorAbsentPremierePage() {
+        assertNull(ProductController.decodeSyncCursor(null));
+        assertNull(ProductController.decodeSyncCursor(""));
+    }
+
+    @Test
+    void syncCursorInvalideRefuse() {
+        // Curseur d'une liste par ID, date ou ID illisibles
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.decodeSyncCursor(ProductController.encodeCursor(10)));
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.decodeSyncCursor(base64("s|hier|2025-06-01T00:00|1")));
+        assertThrows(IllegalArgumentException.class,
+            () -> ProductController.decodeSyncCursor(base64("s|2025-06-01T00:00|2025-06-01T00:00|x")));
+    }
+
+    private static ProductQuery query(Map<String, String> params) {
+        return ProductQuery.parse(params::get);
+    }
+
+    private static String base64(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
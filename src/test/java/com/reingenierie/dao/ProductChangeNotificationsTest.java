@@ -0,0 +1,74 @@
+package com.reingenierie.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Format des notifications du bus d'invalidation : lecture des charges utiles et découpage sous la limite NOTIFY
+ */
+class ProductChangeNotificationsTest {
+
+    @Test
+    void parseLitInstanceEtIds() {
+        ProductChangeNotifications.Notification notification = ProductChangeNotifications.parse("abc 1,22,333");
+
+        assertEquals("abc", notification.sender);
+        assertFalse(notification.all);
+        assertEquals(List.of(1L, 22L, 333L), notification.ids);
+        assertTrue(notification.isFrom("abc"));
+        assertFalse(notification.isFrom("xyz"));
+    }
+
+    @Test
+    void parseToutLeCatalogue() {
+        ProductChangeNotifications.Notification notification = ProductChangeNotifications.parse("abc *");
+
+        assertTrue(notification.all);
+        assertTrue(notification.ids.isEmpty());
+    }
+
+    @Test
+    void parseRefuseLesFormatsInconnus() {
+        assertNull(ProductChangeNotifications.parse(null));
+        assertNull(ProductChangeNotifications.parse(""));
+        assertNull(ProductChangeNotifications.parse("sans-espace"));
+        assertNull(ProductChangeNotifications.parse(" 1,2"));
+        assertNull(ProductChangeNotifications.parse("abc 1,x"));
+        assertNull(ProductChangeNotifications.parse("abc "));
+        assertNull(ProductChangeNotifications.parse("abc 1,,2"));
+    }
+
+    @Test
+    void payloadsUneSeuleNotificationSousLaLimite() {
+        List<String> payloads = ProductChangeNotifications.payloads("abc", List.of(1L, 2L, 3L));
+
+        assertEquals(List.of("abc 1,2,3"), payloads);
+    }
+
+    @Test
+    void payloadsDecoupeesSousLaLimiteEtRelisibles() {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 5000; i++) {
+            ids.add(1_000_000_000_000L + i);
+        }
+
+        List<String> payloads = ProductChangeNotifications.payloads("abc", ids);
+
+        assertTrue(payloads.size() > 1);
+        List<Long> received = new ArrayList<>();
+        for (String payload : payloads) {
+            assertTrue(payload.length() <= ProductChangeNotifications.MAX_PAYLOAD, "charge utile trop longue : " + payload.length());
+            ProductChangeNotifications.Notification notification = ProductChangeNotifications.parse(payload);
+            assertEquals("abc", notification.sender);
+            received.addAll(notification.ids);
+        }
+        assertEquals(ids, received);
+    }
+}
@@ -0,0 +1,112 @@
+package com.reingenierie.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Variations appliquées aux statistiques d'inventaire, sans réconciliation avec la base
+ */
+class InventoryStatsTest {
+
+    private static final int LOW_STOCK_THRESHOLD = 10;
+
+    // Ni start() ni réconciliation avant la fin du test : l'état part de zéro et ne suit que les variations
+    private final InventoryStats stats = new InventoryStats(null, "exact", LOW_STOCK_THRESHOLD, 1, 3_600_000, 3_600_000);
+
+    @AfterEach
+    void shutdown() {
+        stats.shutdown();
+    }
+
+    @Test
+    void etatInitialVide() {
+        InventoryStats.InventoryStatsResponse snapshot = stats.snapshot();
+
+        assertEquals(0, snapshot.totalProducts);
+        assertEquals(0, snapshot.totalUnits);
+        assertNull(snapshot.averagePrice);
+        assertNull(snapshot.minPrice);
+        assertNull(snapshot.maxPrice);
+    }
+
+    @Test
+    void creationsMiseAJourEtSuppression() {
+        stats.change(null, null, price("10.00"), 5);
+        stats.change(null, null, price("20.00"), 20);
+
+        assertEquals(2, stats.productCount());
+        assertEquals(25, stats.totalUnits());
+        assertEquals(price("450.00"), stats.inventoryValue());
+        assertEquals(1, stats.lowStockCount());
+
+        // Réassort du premier produit : il sort du stock bas
+        stats.change(price("10.00"), 5, price("10.00"), 15);
+        assertEquals(2, stats.productCount());
+        assertEquals(35, stats.totalUnits());
+        assertEquals(price("550.00"), stats.inventoryValue());
+        assertEquals(0, stats.lowStockCount());
+
+        stats.change(price("10.00"), 15, null, null);
+        assertEquals(1, stats.productCount());
+        assertEquals(20, stats.totalUnits());
+        assertEquals(price("400.00"), stats.inventoryValue());
+        assertEquals(price("20.00"), stats.snapshot().averagePrice);
+    }
+
+    @Test
+    void changementDePrix() {
+        stats.change(null, null, price("10.00"), 2);
+        stats.change(null, null, price("30.00"), 2);
+
+        stats.change(price("30.00"), 2, price("12.50"), 4);
+
+        InventoryStats.InventoryStatsResponse snapshot = stats.snapshot();
+        assertEquals(2, snapshot.totalProducts);
+        assertEquals(6, snapshot.totalUnits);
+        assertEquals(price("70.00"), snapshot.inventoryValue);
+        assertEquals(price("11.25"), snapshot.averagePrice);
+        assertEquals(price("10.00"), snapshot.minPrice);
+    }
+
+    @Test
+    void variationDeStockSeule() {
+        stats.change(null, null, price("2.50"), 12);
+
+        stats.quantityChanged(price("2.50"), 12, 8);
+
+        assertEquals(8, stats.totalUnits());
+        assertEquals(price("20.00"), stats.inventoryValue());
+        assertEquals(1, stats.lowStockCount());
+    }
+
+    @Test
+    void extremesEtendusALAjout() {
+        stats.change(null, null, price("5.00"), 1);
+        stats.change(null, null, price("0.99"), 1);
+        stats.change(null, null, price("99.90"), 1);
+
+        InventoryStats.InventoryStatsResponse snapshot = stats.snapshot();
+        assertEquals(price("0.99"), snapshot.minPrice);
+        assertEquals(price("99.90"), snapshot.maxPrice);
+    }
+
+    @Test
+    void chaqueVariationChangeLaRevision() {
+        long before = stats.revision();
+
+        stats.change(null, null, price("1.00"), 1);
+        stats.quantityChanged(price("1.00"), 1, 2);
+
+        assertTrue(stats.revision() >= before + 2);
+    }
+
+    private static BigDecimal price(String value) {
+        return new BigDecimal(value);
+    }
+}
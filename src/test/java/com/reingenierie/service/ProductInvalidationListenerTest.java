@@ -0,0 +1,147 @@
+package com.reingenierie.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Séquence connexion → reconnexion → vidage des caches du bus d'invalidation, sans PostgreSQL :
+ * le thread d'écoute n'est pas démarré, ses transitions sont appelées directement
+ */
+class ProductInvalidationListenerTest {
+
+    private final List<List<Long>> changed = new CopyOnWriteArrayList<>();
+    private final AtomicInteger resyncs = new AtomicInteger();
+    private final AtomicReference<Thread> resyncThread = new AtomicReference<>();
+    private volatile CountDownLatch resyncDone = new CountDownLatch(1);
+    private volatile CountDownLatch resyncGate;
+
+    private final ProductInvalidationListener listener = new ProductInvalidationListener("moi", changed::add, () -> {
+        CountDownLatch gate = resyncGate;
+        if (gate != null) {
+            awaitQuietly(gate);
+        }
+        resyncThread.set(Thread.currentThread());
+        resyncs.incrementAndGet();
+        resyncDone.countDown();
+    }, 1000, 10, 100);
+
+    @AfterEach
+    void shutdown() {
+        listener.shutdown();
+    }
+
+    @Test
+    void premiereConnexionSansVidage() {
+        assertFalse(listener.connected());
+        // Écoute déjà établie : pas d'attente
+        listener.awaitListening(60_000);
+    }
+
+    @Test
+    void reconnexionImposeUnVidage() {
+        assertFalse(listener.connected());
+
+        listener.disconnected();
+
+        assertTrue(listener.connected());
+    }
+
+    @Test
+    void ecouteTardiveImposeUnVidage() {
+        // start() n'a pas vu l'écoute à temps : les caches ont pu être remplis sans bus
+        listener.awaitListening(10);
+
+        assertTrue(listener.connected());
+    }
+
+    @Test
+    void attenteReveilleeParLaConnexion() throws Exception {
+        Thread connector = new Thread(() -> {
+            sleepQuietly(50);
+            listener.connected();
+        });
+        connector.start();
+
+        long start = System.nanoTime();
+        listener.awaitListening(60_000);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 30_000);
+        connector.join();
+        // Connexion établie pendant l'attente : c'était la première
+        listener.disconnected();
+        assertTrue(listener.connected());
+    }
+
+    @Test
+    void videLesCachesHorsDuThreadAppelant() throws Exception {
+        listener.requestResync();
+
+        assertTrue(resyncDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, resyncs.get());
+        assertNotSame(Thread.currentThread(), resyncThread.get());
+        // Compté une fois le vidage terminé
+        long deadline = System.currentTimeMillis() + 5000;
+        while (listener.resyncCount() == 0 && System.currentTimeMillis() < deadline) {
+            sleepQuietly(10);
+        }
+        assertEquals(1, listener.resyncCount());
+    }
+
+    @Test
+    void demandesEnAttenteRegroupees() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        resyncGate = gate;
+        listener.requestResync();
+        // Le premier vidage est bloqué : les demandes suivantes n'en ajoutent qu'un seul
+        sleepQuietly(50);
+        resyncDone = new CountDownLatch(2);
+        listener.requestResync();
+        listener.requestResync();
+        listener.handle("autre *");
+        gate.countDown();
+
+        assertTrue(resyncDone.await(5, TimeUnit.SECONDS));
+        sleepQuietly(50);
+        assertEquals(2, resyncs.get());
+    }
+
+    @Test
+    void notificationsDesAutresReplicas() throws Exception {
+        listener.handle("autre 1,2");
+        listener.handle("moi 3");
+        listener.handle("illisible");
+        listener.handle("autre *");
+
+        assertEquals(List.of(List.of(1L, 2L)), changed);
+        assertTrue(resyncDone.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.receivedCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.reingenierie.service;
+
+import com.reingenierie.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Index de recherche en mémoire : ajout, remplacement, suppression et compaction des slots morts (résultats : IDs)
+ */
+class ProductSearchIndexTest {
+
+    @Test
+    void searchParSousChaineTrieeParPertinence() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        index.put(product(1L, "Clavier mécanique"));
+        index.put(product(2L, "Souris"));
+        index.put(product(3L, "Clavier"));
+        index.put(product(4L, "Repose-poignet pour clavier"));
+
+        // Nom exact, puis préfixe, puis nom contenant ; casse ignorée
+        assertEquals(List.of(3L, 1L, 4L), index.search("CLAVIER", 10));
+        assertEquals(List.of(3L, 1L), index.search("clavier", 2));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void searchRequeteCourte() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        index.put(product(1L, "Câble USB"));
+        index.put(product(2L, "Écran"));
+
+        // Moins de 3 caractères : pas de trigramme, parcours des slots
+        assertEquals(List.of(1L), index.search("us", 10));
+        assertTrue(index.search(" ", 10).isEmpty());
+        assertTrue(index.search("usb", 0).isEmpty());
+    }
+
+    @Test
+    void searchDescriptionSiIndexee() {
+        ProductSearchIndex withDescription = new ProductSearchIndex(true);
+        ProductSearchIndex withoutDescription = new ProductSearchIndex(false);
+        Product product = product(1L, "Casque");
+        product.setDescription("Réduction de bruit active");
+        withDescription.put(product);
+        withoutDescription.put(product);
+
+        assertEquals(List.of(1L), withDescription.search("bruit", 10));
+        assertTrue(withoutDescription.search("bruit", 10).isEmpty());
+    }
+
+    @Test
+    void putRemplaceLAncienneVersion() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        index.put(product(1L, "Lampe de bureau"));
+        index.put(product(1L, "Lampe frontale"));
+
+        assertTrue(index.search("bureau", 10).isEmpty());
+        assertEquals(List.of(1L), index.search("frontale", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void putCopieLesTextesSansGarderLEntite() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        Product product = product(1L, "Bouilloire");
+        index.put(product);
+
+        // L'entité modifiée après coup (ex. par une écriture en échec) ne change pas l'index
+        product.setName("Grille-pain");
+
+        assertEquals(List.of(1L), index.search("bouilloire", 10));
+        assertTrue(index.search("grille", 10).isEmpty());
+    }
+
+    @Test
+    void removeRetireLeProduit() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        index.put(product(1L, "Tapis de souris"));
+        index.put(product(2L, "Souris sans fil"));
+
+        index.remove(1L);
+        index.remove(99L);
+        index.remove(null);
+
+        assertEquals(List.of(2L), index.search("souris", 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void compactionConserveLesProduitsVivants() {
+        ProductSearchIndex index = new ProductSearchIndex(false);
+        for (long id = 1; id <= 500; id++) {
+            index.put(product(id, "Produit " + id));
+        }
+        // Plusieurs milliers de slots morts : la compaction se déclenche plusieurs fois
+        for (int round = 1; round <= 10; round++) {
+            for (long id = 1; id <= 500; id++) {
+                index.put(product(id, "Article v" + round + " n" + id));
+            }
+        }
+        for (long id = 251; id <= 500; id++) {
+            index.remove(id);
+        }
+
+        assertEquals(250, index.size());
+        assertTrue(index.search("produit", 10).isEmpty());
+        assertTrue(index.search("article v9", 10).isEmpty());
+        assertEquals(250, index.search("article v10", 1000).size());
+        assertEquals(List.of(42L), index.search("v10 n42", 10));
+        assertTrue(index.search("v10 n300", 10).isEmpty());
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product(name, null, new BigDecimal("1.00"), 1);
+        product.setId(id);
+        return product;
+    }
+}